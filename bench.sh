@@ -0,0 +1,27 @@
+#!/bin/bash
+# Builds and runs the JMH benchmarks in src/bench. Any arguments are passed to JMH, for example
+# `./bench.sh AirportBenchmark.checkSeparation -p aircraft=1000`. Results are written as JSON to
+# bench/results.json so they can be compared between releases.
+
+
+JMH_VERSION=1.37
+MAVEN=https://repo.maven.apache.org/maven2
+
+mkdir -p bench/lib
+for jar in "org/openjdk/jmh/jmh-core/$JMH_VERSION/jmh-core-$JMH_VERSION.jar" \
+		   "org/openjdk/jmh/jmh-generator-annprocess/$JMH_VERSION/jmh-generator-annprocess-$JMH_VERSION.jar" \
+		   "net/sf/jopt-simple/jopt-simple/5.0.4/jopt-simple-5.0.4.jar" \
+		   "org/apache/commons/commons-math3/3.6.1/commons-math3-3.6.1.jar"
+do
+	if [ ! -f "bench/lib/$(basename $jar)" ]; then
+		curl -sSfL -o "bench/lib/$(basename $jar)" "$MAVEN/$jar" || exit 1
+	fi
+done
+
+mkdir -p bench/obj
+rm -rf bench/obj/*
+
+javac -Xlint:unchecked -Xlint:deprecation -cp 'src/lib/*:bench/lib/*' -d bench/obj/ \
+	  $(find src/main src/bench -name '*.java') || exit 1
+java -cp 'bench/obj:src/lib/*:bench/lib/*' org.openjdk.jmh.Main \
+	 -rf json -rff bench/results.json "$@"
@@ -5,3 +5,7 @@ mkdir -p bin
 rm -rf bin/*
 
 jar cmf 'manifest.mf' bin/ApproachControl.jar -C obj/ .
+
+# The airports are read from beside the jar, so they ship with it
+mkdir -p bin/airports
+cp airports/*.apt bin/airports/
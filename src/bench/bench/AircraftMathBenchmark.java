@@ -0,0 +1,91 @@
+package bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import java.lang.invoke.MethodHandle;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AircraftMathBenchmark {
+
+	private static final MethodHandle HDG_TO_TARGET =
+		Game.method("AircraftMath", "hdgToTarget",
+					double.class, double.class, double.class, double.class);
+	private static final MethodHandle APPROACH_HDG =
+		Game.method("AircraftMath", "approachHdg", double.class, double.class, double.class);
+	private static final MethodHandle ADJUST_HDG =
+		Game.method("AircraftMath", "adjustHdg", double.class);
+
+	// Inputs are cycled through so the JIT can not fold a single constant call
+	private static final int INPUTS = 1024;
+
+
+	private double[] x;
+	private double[] y;
+	private double[] hdg;
+	private double[] unadjustedHdg;
+	private int i;
+
+
+	@Setup
+	public void setup() {
+		Random random = new Random(0);
+		this.x = new double[AircraftMathBenchmark.INPUTS];
+		this.y = new double[AircraftMathBenchmark.INPUTS];
+		this.hdg = new double[AircraftMathBenchmark.INPUTS];
+		this.unadjustedHdg = new double[AircraftMathBenchmark.INPUTS];
+		for (int j = 0; j < AircraftMathBenchmark.INPUTS; j++) {
+			this.x[j] = random.nextDouble() * 40;
+			this.y[j] = random.nextDouble() * 40;
+			this.hdg[j] = random.nextDouble() * 360;
+			this.unadjustedHdg[j] = random.nextDouble() * 1440 - 720;
+		}
+		this.i = 0;
+	}
+
+
+	private int next() {
+		this.i = (this.i + 1) & (AircraftMathBenchmark.INPUTS - 1);
+		return this.i;
+	}
+
+
+	@Benchmark
+	public double hdgToTarget() throws Throwable {
+		int j = this.next();
+		int k = (j + 1) & (AircraftMathBenchmark.INPUTS - 1);
+		return (double) AircraftMathBenchmark.HDG_TO_TARGET.invokeExact(this.x[j], this.y[j],
+																		this.x[k], this.y[k]);
+	}
+
+
+	@Benchmark
+	public double approachHdg() throws Throwable {
+		int j = this.next();
+		int k = (j + 1) & (AircraftMathBenchmark.INPUTS - 1);
+		return (double) AircraftMathBenchmark.APPROACH_HDG.invokeExact(this.hdg[j], this.hdg[k],
+																	   3.0 / 60.0);
+	}
+
+
+	@Benchmark
+	public double adjustHdg() throws Throwable {
+		return (double) AircraftMathBenchmark.ADJUST_HDG.invokeExact(this.unadjustedHdg[this.next()]);
+	}
+
+}
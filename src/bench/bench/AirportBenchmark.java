@@ -0,0 +1,146 @@
+package bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import java.lang.invoke.MethodHandle;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AirportBenchmark {
+
+	private static final Class<?> AIRCRAFT = Game.type("Aircraft");
+	private static final MethodHandle NEW_AIRPORT =
+		Game.constructor("Airport", Game.type("AirportDefinition"), long.class);
+	private static final MethodHandle NEW_AIRCRAFT =
+		Game.constructor("Aircraft", Game.type("Waypoint"), SplittableRandom.class);
+	private static final MethodHandle GET_WAYPOINTS = Game.method("Airport", "getWaypoints");
+	private static final MethodHandle GET_AIRCRAFT = Game.method("Airport", "getAircraft");
+	private static final MethodHandle GET_RADAR_RANGE = Game.method("Airport", "getRadarRange");
+	private static final MethodHandle SET_MAX_AIRCRAFT =
+		Game.method("Airport", "setMaxAircraft", int.class);
+	private static final MethodHandle ADD_AIRCRAFT =
+		Game.method("Airport", "addAircraft", AirportBenchmark.AIRCRAFT);
+	private static final MethodHandle SET_LOCATION =
+		Game.method("Aircraft", "setLocation", double.class, double.class);
+	private static final MethodHandle SET_CURRENT_HDG =
+		Game.method("Aircraft", "setCurrentHdg", double.class);
+
+	private static final MethodHandle CHECK_SEPARATION = Game.method("Airport", "checkSeparation");
+	private static final MethodHandle NO_CONFLICT =
+		Game.method("Airport", "noConflict", AirportBenchmark.AIRCRAFT);
+	private static final MethodHandle CREATE_AIRCRAFT = Game.method("Airport", "createAircraft");
+	private static final MethodHandle UPDATE_TABLE =
+		Game.method("AircraftTable", "update", double.class);
+	private static final MethodHandle GET_PROBE = Game.method("Airport", "getProbe");
+	private static final MethodHandle PROBE =
+		Game.method("ConflictProbe", "probe", Game.type("AircraftTable"));
+
+	// Candidates for noConflict are cycled through so every call probes a different position
+	private static final int CANDIDATES = 1024;
+
+
+	@Param({"10", "100", "1000", "10000"})
+	public int aircraft;
+
+	private Object airport;
+	private Object table;
+	private Object probe;
+	private Object[] candidates;
+	private int i;
+
+
+	private Object createAircraft(Object target, double side, SplittableRandom random)
+		throws Throwable
+	{
+		Object aircraft = AirportBenchmark.NEW_AIRCRAFT.invoke(target, random);
+		AirportBenchmark.SET_LOCATION.invoke(aircraft,
+											 random.nextDouble() * side,
+											 random.nextDouble() * side);
+		AirportBenchmark.SET_CURRENT_HDG.invoke(aircraft, random.nextInt(36) * 10.0);
+		return aircraft;
+	}
+
+
+	@Setup
+	public void setup() throws Throwable {
+		// Seed everything so each run measures the same scenario
+		SplittableRandom random = new SplittableRandom(0);
+		this.airport = AirportBenchmark.NEW_AIRPORT.invoke(Game.airportDefinition("KJFK"), 0L);
+		AirportBenchmark.SET_MAX_AIRCRAFT.invoke(this.airport, Integer.MAX_VALUE);
+
+		// Inbound aircraft start at a random altitude, so target the last waypoint, a runway
+		Object[] waypoints = (Object[]) AirportBenchmark.GET_WAYPOINTS.invoke(this.airport);
+		Object target = waypoints[waypoints.length - 1];
+
+		// Grow the area with the number of aircraft, keeping the density of 10 aircraft on the
+		// regular scope, so the number of neighbors per aircraft stays the same
+		int radarRange = (int) AirportBenchmark.GET_RADAR_RANGE.invoke(this.airport);
+		double side = radarRange * Math.sqrt(this.aircraft / 10.0);
+		for (int j = 0; j < this.aircraft; j++)
+			AirportBenchmark.ADD_AIRCRAFT.invoke(this.airport,
+												 this.createAircraft(target, side, random));
+
+		this.table = AirportBenchmark.GET_AIRCRAFT.invoke(this.airport);
+		this.probe = AirportBenchmark.GET_PROBE.invoke(this.airport);
+		this.candidates = new Object[AirportBenchmark.CANDIDATES];
+		for (int j = 0; j < AirportBenchmark.CANDIDATES; j++)
+			this.candidates[j] = this.createAircraft(target, side, random);
+		this.i = 0;
+	}
+
+
+	@Benchmark
+	public boolean checkSeparation() throws Throwable {
+		return (boolean) AirportBenchmark.CHECK_SEPARATION.invokeExact(this.airport);
+	}
+
+
+	@Benchmark
+	public boolean noConflict() throws Throwable {
+		this.i = (this.i + 1) & (AirportBenchmark.CANDIDATES - 1);
+		return (boolean) AirportBenchmark.NO_CONFLICT.invokeExact(this.airport,
+																  this.candidates[this.i]);
+	}
+
+
+	@Benchmark
+	public boolean spawn() throws Throwable {
+		// Spawn selection is choosing the origin and target, building the aircraft, and
+		// checking it against the existing traffic
+		Object candidate = (Object) AirportBenchmark.CREATE_AIRCRAFT.invokeExact(this.airport);
+		return (boolean) AirportBenchmark.NO_CONFLICT.invokeExact(this.airport, candidate);
+	}
+
+
+	@Benchmark
+	public Object conflictProbe() throws Throwable {
+		// One full probe, which the airport runs on every tick by default
+		return (Object) AirportBenchmark.PROBE.invokeExact(this.probe, this.table);
+	}
+
+
+	@Benchmark
+	public void physicsStep() throws Throwable {
+		// The airport's table is only stepped by a thread holding the airport lock
+		synchronized (this.airport) {
+			AirportBenchmark.UPDATE_TABLE.invokeExact(this.table, 1.0 / 60.0);
+		}
+	}
+
+}
@@ -0,0 +1,144 @@
+package bench;
+
+import java.lang.invoke.MethodHandle;
+import java.util.SplittableRandom;
+
+
+// Compares FastMath with the exact functions it replaces, over a sweep of inputs, and exits
+// with a failure if any error is over its tolerance. Run it after changing FastMath with
+// `java -cp bench/obj bench.FastMathAccuracy` once bench.sh has built the benchmarks
+public final class FastMathAccuracy {
+
+	private static final MethodHandle SIN_DEG = Game.method("FastMath", "sinDeg", double.class);
+	private static final MethodHandle COS_DEG = Game.method("FastMath", "cosDeg", double.class);
+	private static final MethodHandle FAST_ADJUST_HDG =
+		Game.method("FastMath", "adjustHdg", double.class);
+	private static final MethodHandle ADJUST_HDG =
+		Game.method("AircraftMath", "adjustHdg", double.class);
+	private static final MethodHandle FAST_HDG_TO_TARGET =
+		Game.method("FastMath", "hdgToTarget",
+					double.class, double.class, double.class, double.class);
+	private static final MethodHandle HDG_TO_TARGET =
+		Game.method("AircraftMath", "hdgToTarget",
+					double.class, double.class, double.class, double.class);
+	private static final MethodHandle FAST_APPROACH_HDG =
+		Game.method("FastMath", "approachHdg", double.class, double.class, double.class);
+	private static final MethodHandle APPROACH_HDG =
+		Game.method("AircraftMath", "approachHdg", double.class, double.class, double.class);
+
+	private static final int SAMPLES = 1_000_000;
+
+	// Largest error allowed for each function. Trig is interpolated from a table, and the rest
+	// only differ by rounding
+	private static final double TRIG_TOLERANCE = 1e-6;
+	private static final double HDG_TOLERANCE = 1e-5; // In deg
+	private static final double POSITION_TOLERANCE = 1e-4; // In nm, after a long turning flight
+
+
+	private FastMathAccuracy() { }
+
+
+	private static double hdgError(double a, double b) {
+		// Headings of 0 and 359.999 are next to each other
+		double error = Math.abs(a - b) % 360;
+		return Math.min(error, 360 - error);
+	}
+
+
+	private static boolean report(String name, double error, double tolerance) {
+		boolean passed = error <= tolerance;
+		System.out.println(String.format("%-12s max error %.3e (tolerance %.0e) %s",
+										 name, error, tolerance, passed ? "ok" : "FAILED"));
+		return passed;
+	}
+
+
+	private static double flight(boolean fast) throws Throwable {
+		// Fly a constant-rate turn, with the same laws as the aircraft update, and return where
+		// it ends up. Small errors in the heading grow into position errors over time
+		double x = 20;
+		double y = 20;
+		double hdg = 0;
+		double target = 0;
+		double spd = 250; // In kt
+		double seconds = 1.0 / 60;
+		for (int tick = 0; tick < 60 * 60 * 10; tick++) {
+			double vx;
+			double vy;
+			if (fast) {
+				vx = spd * (double) FastMathAccuracy.SIN_DEG.invokeExact(hdg);
+				vy = spd * (double) FastMathAccuracy.COS_DEG.invokeExact(hdg);
+			}
+			else {
+				double rad = (90 - hdg) * (Math.PI / 180);
+				vx = spd * Math.cos(rad);
+				vy = spd * Math.sin(rad);
+			}
+			x += vx * seconds / 3600;
+			y -= vy * seconds / 3600;
+
+			target = (tick % 3600 < 1800) ? target + 0.01 : target;
+			target = fast ?
+				(double) FastMathAccuracy.FAST_ADJUST_HDG.invokeExact(target) :
+				(double) FastMathAccuracy.ADJUST_HDG.invokeExact(target);
+			hdg = fast ?
+				(double) FastMathAccuracy.FAST_APPROACH_HDG.invokeExact(hdg, target, 3 * seconds) :
+				(double) FastMathAccuracy.APPROACH_HDG.invokeExact(hdg, target, 3 * seconds);
+		}
+		return Math.sqrt(x * x + y * y);
+	}
+
+
+	public static void main(String[] args) throws Throwable {
+		SplittableRandom random = new SplittableRandom(0);
+		double sinError = 0;
+		double cosError = 0;
+		double adjustError = 0;
+		double targetError = 0;
+		double approachError = 0;
+
+		for (int i = 0; i < FastMathAccuracy.SAMPLES; i++) {
+			double deg = random.nextDouble(-720, 720);
+			double rad = Math.toRadians(deg);
+			double sin = (double) FastMathAccuracy.SIN_DEG.invokeExact(deg);
+			double cos = (double) FastMathAccuracy.COS_DEG.invokeExact(deg);
+			sinError = Math.max(sinError, Math.abs(sin - Math.sin(rad)));
+			cosError = Math.max(cosError, Math.abs(cos - Math.cos(rad)));
+
+			double hdg = random.nextDouble(-10_000, 10_000);
+			adjustError = Math.max(adjustError, FastMathAccuracy.hdgError(
+				(double) FastMathAccuracy.FAST_ADJUST_HDG.invokeExact(hdg),
+				(double) FastMathAccuracy.ADJUST_HDG.invokeExact(hdg)));
+
+			double x1 = random.nextDouble(0, 40);
+			double y1 = random.nextDouble(0, 40);
+			double x2 = random.nextDouble(0, 40);
+			double y2 = random.nextDouble(0, 40);
+			targetError = Math.max(targetError, FastMathAccuracy.hdgError(
+				(double) FastMathAccuracy.FAST_HDG_TO_TARGET.invokeExact(x1, y1, x2, y2),
+				(double) FastMathAccuracy.HDG_TO_TARGET.invokeExact(x1, y1, x2, y2)));
+
+			double current = random.nextDouble(0, 360);
+			double target = random.nextDouble(0, 360);
+			approachError = Math.max(approachError, FastMathAccuracy.hdgError(
+				(double) FastMathAccuracy.FAST_APPROACH_HDG.invokeExact(current, target, 0.05),
+				(double) FastMathAccuracy.APPROACH_HDG.invokeExact(current, target, 0.05)));
+		}
+		double flightError = Math.abs(FastMathAccuracy.flight(true) -
+									  FastMathAccuracy.flight(false));
+
+		boolean passed = true;
+		passed &= FastMathAccuracy.report("sinDeg", sinError, FastMathAccuracy.TRIG_TOLERANCE);
+		passed &= FastMathAccuracy.report("cosDeg", cosError, FastMathAccuracy.TRIG_TOLERANCE);
+		passed &= FastMathAccuracy.report("adjustHdg", adjustError, FastMathAccuracy.HDG_TOLERANCE);
+		passed &= FastMathAccuracy.report("hdgToTarget", targetError,
+										  FastMathAccuracy.HDG_TOLERANCE);
+		passed &= FastMathAccuracy.report("approachHdg", approachError,
+										  FastMathAccuracy.HDG_TOLERANCE);
+		passed &= FastMathAccuracy.report("flight", flightError,
+										  FastMathAccuracy.POSITION_TOLERANCE);
+		if (!passed)
+			System.exit(1);
+	}
+
+}
@@ -0,0 +1,110 @@
+package bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import java.lang.invoke.MethodHandle;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+
+// The same inputs as AircraftMathBenchmark, so the two can be compared directly. exactSinCos is
+// the velocity calculation the aircraft update used before the tables
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FastMathBenchmark {
+
+	private static final MethodHandle SIN_DEG = Game.method("FastMath", "sinDeg", double.class);
+	private static final MethodHandle COS_DEG = Game.method("FastMath", "cosDeg", double.class);
+	private static final MethodHandle HDG_TO_TARGET =
+		Game.method("FastMath", "hdgToTarget",
+					double.class, double.class, double.class, double.class);
+	private static final MethodHandle APPROACH_HDG =
+		Game.method("FastMath", "approachHdg", double.class, double.class, double.class);
+	private static final MethodHandle ADJUST_HDG =
+		Game.method("FastMath", "adjustHdg", double.class);
+
+	// Inputs are cycled through so the JIT can not fold a single constant call
+	private static final int INPUTS = 1024;
+
+
+	private double[] x;
+	private double[] y;
+	private double[] hdg;
+	private double[] unadjustedHdg;
+	private int i;
+
+
+	@Setup
+	public void setup() {
+		Random random = new Random(0);
+		this.x = new double[FastMathBenchmark.INPUTS];
+		this.y = new double[FastMathBenchmark.INPUTS];
+		this.hdg = new double[FastMathBenchmark.INPUTS];
+		this.unadjustedHdg = new double[FastMathBenchmark.INPUTS];
+		for (int j = 0; j < FastMathBenchmark.INPUTS; j++) {
+			this.x[j] = random.nextDouble() * 40;
+			this.y[j] = random.nextDouble() * 40;
+			this.hdg[j] = random.nextDouble() * 360;
+			this.unadjustedHdg[j] = random.nextDouble() * 1440 - 720;
+		}
+		this.i = 0;
+	}
+
+
+	private int next() {
+		this.i = (this.i + 1) & (FastMathBenchmark.INPUTS - 1);
+		return this.i;
+	}
+
+
+	@Benchmark
+	public double sinCos() throws Throwable {
+		double hdg = this.hdg[this.next()];
+		return (double) FastMathBenchmark.SIN_DEG.invokeExact(hdg) +
+			(double) FastMathBenchmark.COS_DEG.invokeExact(hdg);
+	}
+
+
+	@Benchmark
+	public double exactSinCos() {
+		double rad = (90 - this.hdg[this.next()]) * (Math.PI / 180);
+		return Math.cos(rad) + Math.sin(rad);
+	}
+
+
+	@Benchmark
+	public double hdgToTarget() throws Throwable {
+		int j = this.next();
+		int k = (j + 1) & (FastMathBenchmark.INPUTS - 1);
+		return (double) FastMathBenchmark.HDG_TO_TARGET.invokeExact(this.x[j], this.y[j],
+																	this.x[k], this.y[k]);
+	}
+
+
+	@Benchmark
+	public double approachHdg() throws Throwable {
+		int j = this.next();
+		int k = (j + 1) & (FastMathBenchmark.INPUTS - 1);
+		return (double) FastMathBenchmark.APPROACH_HDG.invokeExact(this.hdg[j], this.hdg[k],
+																   3.0 / 60.0);
+	}
+
+
+	@Benchmark
+	public double adjustHdg() throws Throwable {
+		return (double) FastMathBenchmark.ADJUST_HDG.invokeExact(this.unadjustedHdg[this.next()]);
+	}
+
+}
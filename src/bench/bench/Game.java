@@ -0,0 +1,65 @@
+package bench;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+
+
+// JMH refuses to generate code for benchmarks in the default package, which is where every
+// game class lives. Benchmarks reach the game through method handles instead. Handles stored in
+// static final fields are constants to the JIT, so they are inlined like a direct call
+public final class Game {
+
+	private Game() { }
+
+
+	public static Class<?> type(String name) {
+		try {
+			return Class.forName(name);
+		}
+		catch (ClassNotFoundException e) {
+			throw new IllegalStateException("game class not found: " + name, e);
+		}
+	}
+
+
+	public static MethodHandle method(String className, String name, Class<?>... parameterTypes) {
+		try {
+			Method method = Game.type(className).getDeclaredMethod(name, parameterTypes);
+			method.setAccessible(true);
+			MethodHandle handle = MethodHandles.lookup().unreflect(method);
+			// Game types can not be named here, so every reference type is passed as Object
+			return handle.asType(handle.type().erase());
+		}
+		catch (ReflectiveOperationException e) {
+			throw new IllegalStateException("game method not found: " + className + "." + name, e);
+		}
+	}
+
+
+	public static MethodHandle constructor(String className, Class<?>... parameterTypes) {
+		try {
+			Constructor<?> constructor = Game.type(className).getDeclaredConstructor(parameterTypes);
+			constructor.setAccessible(true);
+			MethodHandle handle = MethodHandles.lookup().unreflectConstructor(constructor);
+			return handle.asType(handle.type().erase());
+		}
+		catch (ReflectiveOperationException e) {
+			throw new IllegalStateException("game constructor not found: " + className, e);
+		}
+	}
+
+
+	public static Object airportDefinition(String code) {
+		// Definitions are read from the airports directory, so benchmarks are run from the root
+		try {
+			Object registry = Game.constructor("AirportRegistry").invoke();
+			return Game.method("AirportRegistry", "get", String.class).invoke(registry, code);
+		}
+		catch (Throwable e) {
+			throw new IllegalStateException("game airport not found: " + code, e);
+		}
+	}
+
+}
@@ -1,14 +1,4 @@
-import java.awt.Graphics;
-import java.awt.Graphics2D;
-import java.awt.RenderingHints;
-import java.awt.Rectangle;
-import java.awt.geom.Ellipse2D;
-import java.awt.geom.Line2D;
-import java.awt.BasicStroke;
-import java.awt.Dimension;
-import java.awt.Point;
-import java.awt.Color;
-import java.awt.Font;
+import java.util.SplittableRandom;
 
 
 public class Aircraft {
@@ -72,13 +62,22 @@ public class Aircraft {
 	private static final Type[] GA_TYPES = {new Type("C172", 13000, 47, 163)};
 	
 
-	// Aircraft properties
+	// Aircraft properties. Everything that changes over time is kept in a row of an
+	// AircraftTable, so this object is only a view over that row
 	private Type type;
 	private boolean isGA;
 	private String id;
-	private Controls controls;
+	private AircraftTable table;
+	private int row;
+
+	// State of an aircraft that is not in a table, either waiting to be added to an airport or
+	// removed from one. Only read while table is null
 	private Waypoint target;
+	private SplittableRandom random;
 	private boolean cleared;
+	private boolean handedOff;
+	private double x; // In nm
+	private double y; // In nm
 	private double currentAlt; // In ft
 	private double targetAlt; // In ft
 	private double currentSpd; // In kt
@@ -86,34 +85,40 @@ public class Aircraft {
 	private double currentHdg; // In deg
 	private double targetHdg; // In deg
 
-	// Graphics
-	private double x; // In nm
-	private double y; // In nm
-	private double size;
 
-
-	public Aircraft(Waypoint target) {
-		this(target, false);
+	public Aircraft(Waypoint target, SplittableRandom random) {
+		this(target, false, random);
 	}
 	
 
-	public Aircraft(Waypoint target, boolean makeGA) {
+	public Aircraft(Waypoint target, boolean makeGA, SplittableRandom random) {
 		if (target == null)
 			throw new NullPointerException("aircraft target cannot be null");
+		if (random == null)
+			throw new NullPointerException("random cannot be null");
+
+		// Each aircraft draws from its own stream, split from the airport's, so the numbers an
+		// aircraft sees do not depend on how many other aircraft there are
+		random = random.split();
 		
 		// Set aircraft information, depending on whether it should be a commerical or
 		// general aviation aircraft
 		this.type =
 			(!makeGA) ?
-			Aircraft.CA_TYPES[(int) (Math.random() * Aircraft.CA_TYPES.length)] :
-			Aircraft.GA_TYPES[(int) (Math.random() * Aircraft.GA_TYPES.length)];
+			Aircraft.CA_TYPES[(int) (random.nextDouble() * Aircraft.CA_TYPES.length)] :
+			Aircraft.GA_TYPES[(int) (random.nextDouble() * Aircraft.GA_TYPES.length)];
 		this.isGA = makeGA;
-		this.id = (!makeGA) ? Aircraft.AIRLINES[(int) (Math.random() * Aircraft.AIRLINES.length)] + 
-			                  AircraftMath.generateFlightNumber(3) :
-			                  "N" + AircraftMath.generateTailNumber(5);
-		this.controls = new Controls(this);
+		this.id =
+			(!makeGA) ?
+			Aircraft.AIRLINES[(int) (random.nextDouble() * Aircraft.AIRLINES.length)] +
+			AircraftMath.generateFlightNumber(3, random) :
+			"N" + AircraftMath.generateTailNumber(5, random);
+
+		// New aircraft keep their state here until they are added to an airport
+		this.table = null;
+		this.row = -1;
 		this.target = target;
-		this.cleared = false;
+		this.random = random;
 
 		// Set physical information
 		boolean landing = target instanceof Runway;
@@ -123,15 +128,15 @@ public class Aircraft {
 		// Outgoing/takeoff traffic: y_start == 0
 		int minStartAlt = landing ? this.type.maxAlt / 2 : 0;
 		int maxStartAlt = Math.max((landing ? this.type.maxAlt : 0), minStartAlt);
-		int startAlt = (int) (Math.random() * (maxStartAlt - minStartAlt + 1)) + minStartAlt;
+		int startAlt = (int) (random.nextDouble() * (maxStartAlt - minStartAlt + 1)) + minStartAlt;
 		this.currentAlt = AircraftMath.round(startAlt, Aircraft.ALT_INTERVAL);
 		// Outgoing/takeoff traffic: min <= y_target <= max / 3
 		int minEndAlt = this.type.minAlt;
 		int maxEndAlt = Math.max((this.type.maxAlt / 3), minEndAlt);
 		int endAlt =
 			landing ?
-			(int) this.currentAlt :
-			(int) (Math.random() * (maxEndAlt - minEndAlt + 1) + minEndAlt);
+			(int) this.getCurrentAlt() :
+			(int) (random.nextDouble() * (maxEndAlt - minEndAlt + 1) + minEndAlt);
 		this.targetAlt = AircraftMath.round(endAlt, Aircraft.ALT_INTERVAL);
 
 		// Set speed
@@ -139,38 +144,119 @@ public class Aircraft {
 		// Outgoing/takeoff traffic: min <= v <= max / 2
 		int minSpd = this.type.minSpd;
 		int maxSpd = Math.max((landing ? this.type.maxSpd : this.type.maxSpd / 2), minSpd);
-		int spd = (int) (Math.random() * (maxSpd - minSpd + 1)) + minSpd;
+		int spd = (int) (random.nextDouble() * (maxSpd - minSpd + 1)) + minSpd;
 		this.currentSpd = AircraftMath.round(spd, Aircraft.SPD_INTERVAL);
 		this.targetSpd = this.currentSpd;
 		
 	}
 
 
-	public Controls getControls() {
-		return this.controls;
+	Aircraft(Waypoint target, String id, String type, boolean isGA) {
+		if (target == null)
+			throw new NullPointerException("aircraft target cannot be null");
+		if (id == null)
+			throw new NullPointerException("aircraft id cannot be null");
+
+		// Rebuilds an aircraft from a recording with its original callsign and type. Its state
+		// is filled in by the caller
+		for (Type t : isGA ? Aircraft.GA_TYPES : Aircraft.CA_TYPES) {
+			if (t.id.equals(type))
+				this.type = t;
+		}
+		if (this.type == null)
+			throw new IllegalArgumentException("invalid aircraft type " + type);
+		this.isGA = isGA;
+		this.id = id;
+		this.table = null;
+		this.row = -1;
+		this.target = target;
+		this.random = new SplittableRandom(0);
+	}
+
+
+	void bind(AircraftTable table, int row) {
+		this.table = table;
+		this.row = row;
+	}
+
+
+	void detach() {
+		// Keeps the state of the row, so the aircraft stays readable once it has left its table
+		AircraftTable table = this.table;
+		int row = this.row;
+		this.target = table.getTarget(row);
+		this.random = table.getRandom(row);
+		this.cleared = table.isCleared(row);
+		this.handedOff = table.isHandedOff(row);
+		this.x = table.getX(row);
+		this.y = table.getY(row);
+		this.currentAlt = table.getCurrentAlt(row);
+		this.targetAlt = table.getTargetAlt(row);
+		this.currentSpd = table.getCurrentSpd(row);
+		this.targetSpd = table.getTargetSpd(row);
+		this.currentHdg = table.getCurrentHdg(row);
+		this.targetHdg = table.getTargetHdg(row);
+		this.table = null;
+		this.row = -1;
+	}
+
+
+	public AircraftTable getTable() {
+		return this.table;
+	}
+
+
+	public int getRow() {
+		// -1 when the aircraft is not in a table
+		return this.row;
+	}
+
+
+	SplittableRandom getRandom() {
+		return (this.table != null) ? this.table.getRandom(this.row) : this.random;
+	}
+
+
+	public String getId() {
+		return this.id;
+	}
+
+
+	public String getType() {
+		return this.type.id;
 	}
 
 
 	public Waypoint getTarget() {
-		return this.target;
+		return (this.table != null) ? this.table.getTarget(this.row) : this.target;
 	}
 
 
 	public boolean atTarget() {
-		double error = 0.5;
+		Waypoint target = this.getTarget();
+		double x = this.getX();
+		double y = this.getY();
+		double currentAlt = this.getCurrentAlt();
+		boolean cleared = this.isCleared();
 		
 		// Check for final target position
-		boolean atTarget = this.cleared && this.target.inRange(this.x, this.y) &&
-			               this.target.atAlt(this.currentAlt, this.type.maxAlt);
+		boolean atTarget = cleared && target.inRange(x, y) &&
+			               target.atAlt(currentAlt, this.type.maxAlt);
 
 		// Check for approach position. If true, "pass" control to tower
-		if (this.target instanceof Runway && this.cleared &&
-			this.target.inTargetRange(this.x, this.y) &&
-			this.target.atAlt(this.currentAlt, this.type.maxAlt))
+		if (target instanceof Runway && cleared &&
+			target.inTargetRange(x, y) &&
+			target.atAlt(currentAlt, this.type.maxAlt))
 		{
-			// Set some basic information, heading will be updated in Aircraft::update
-			this.controls = null; // Prevent takeover
-			this.targetAlt = 0;
+			// Set some basic information, heading will be updated in AircraftTable::update
+			if (this.table != null) {
+				this.table.setHandedOff(this.row, true); // Prevent takeover
+				this.table.setTargetAlt(this.row, 0);
+			}
+			else {
+				this.handedOff = true;
+				this.targetAlt = 0;
+			}
 		}
 		
 		// Return result
@@ -179,11 +265,23 @@ public class Aircraft {
 
 
 	public boolean isCleared() {
-		return this.cleared;
+		return (this.table != null) ? this.table.isCleared(this.row) : this.cleared;
+	}
+
+
+	public boolean isHandedOff() {
+		return (this.table != null) ? this.table.isHandedOff(this.row) : this.handedOff;
+	}
+
+
+	public boolean isGA() {
+		return this.isGA;
 	}
 
 
 	public boolean canBeCleared() {
+		if (this.table != null)
+			return this.table.canBeCleared(this.row);
 		return this.target.atAlt(this.currentAlt, this.type.maxAlt);
 	}
 
@@ -199,12 +297,12 @@ public class Aircraft {
 
 
 	public double getCurrentAlt() {
-		return this.currentAlt;
+		return (this.table != null) ? this.table.getCurrentAlt(this.row) : this.currentAlt;
 	}
 
 
 	public double getTargetAlt() {
-		return this.targetAlt;
+		return (this.table != null) ? this.table.getTargetAlt(this.row) : this.targetAlt;
 	}
 	
 
@@ -218,53 +316,56 @@ public class Aircraft {
 	}
 
 
-	public double getTargetSpd() {
-		return this.targetSpd;
+	public double getCurrentSpd() {
+		return (this.table != null) ? this.table.getCurrentSpd(this.row) : this.currentSpd;
 	}
 
 
-	public double getTargetHdg() {
-		return this.targetHdg;
+	public double getTargetSpd() {
+		return (this.table != null) ? this.table.getTargetSpd(this.row) : this.targetSpd;
 	}
 
 
-	public double getX() {
-		return this.x;
+	public double getCurrentHdg() {
+		return (this.table != null) ? this.table.getCurrentHdg(this.row) : this.currentHdg;
 	}
 
 
-	public double getY() {
-		return this.y;
+	public double getTargetHdg() {
+		return (this.table != null) ? this.table.getTargetHdg(this.row) : this.targetHdg;
 	}
 
 
-	public double getPxX() {
-		return this.x * Airport.pxPerMile();
+	public double getX() {
+		return (this.table != null) ? this.table.getX(this.row) : this.x;
 	}
 
 
-	public double getPxY() {
-		return this.y * Airport.pxPerMile();
+	public double getY() {
+		return (this.table != null) ? this.table.getY(this.row) : this.y;
 	}
 
 
-	public double getSize() {
-		return this.size;
+	private void setCleared(boolean cleared) {
+		if (this.table != null)
+			this.table.setCleared(this.row, cleared);
+		else
+			this.cleared = cleared;
 	}
 
 
 	public void toggleClearance() {
-		if (this.cleared)
-			this.cleared = false;
+		if (this.isCleared())
+			this.setCleared(false);
 		else {
 			if (this.canBeCleared())
-				this.cleared = true;
+				this.setCleared(true);
 		}
 	}
 
 
 	public void cancelClearance() {
-		this.cleared = false;
+		this.setCleared(false);
 	}
 
 
@@ -272,7 +373,10 @@ public class Aircraft {
 		targetAlt = AircraftMath.round(targetAlt, Aircraft.ALT_INTERVAL);
 		targetAlt = Math.min(targetAlt, this.type.maxAlt);
 		targetAlt = Math.max(targetAlt, this.type.minAlt);
-		this.targetAlt = targetAlt;
+		if (this.table != null)
+			this.table.setTargetAlt(this.row, targetAlt);
+		else
+			this.targetAlt = targetAlt;
 	}
 
 
@@ -280,156 +384,65 @@ public class Aircraft {
 		targetSpd = AircraftMath.round(targetSpd, Aircraft.SPD_INTERVAL);
 		targetSpd = Math.min(targetSpd, this.type.maxSpd);
 		targetSpd = Math.max(targetSpd, this.type.minSpd);
-		this.targetSpd = targetSpd;
+		if (this.table != null)
+			this.table.setTargetSpd(this.row, targetSpd);
+		else
+			this.targetSpd = targetSpd;
 	}
 
 
 	public void setCurrentHdg(double currentHdg) {
-		this.currentHdg = currentHdg;
-		this.targetHdg = this.currentHdg;
+		if (this.table != null) {
+			this.table.setCurrentHdg(this.row, currentHdg);
+			this.table.setTargetHdg(this.row, currentHdg);
+		}
+		else {
+			this.currentHdg = currentHdg;
+			this.targetHdg = currentHdg;
+		}
 	}
 
 
 	public void setTargetHdg(double targetHdg) {
 		targetHdg = AircraftMath.round(targetHdg, Aircraft.HDG_INTERVAL);
-		this.targetHdg = AircraftMath.adjustHdg(targetHdg);
+		targetHdg = AircraftMath.adjustHdg(targetHdg);
+		if (this.table != null)
+			this.table.setTargetHdg(this.row, targetHdg);
+		else
+			this.targetHdg = targetHdg;
 	}
 	
 
-	public void paintComponent(Graphics g, boolean selected) {
-		int pxPerMile = Airport.pxPerMile();
-		Graphics2D gg = (Graphics2D) g.create();
-		gg.setRenderingHints(new RenderingHints(RenderingHints.KEY_ANTIALIASING,
-												RenderingHints.VALUE_ANTIALIAS_ON));
-
-		// Pixel-space information of the aircraft
-		double pxX = this.x * pxPerMile;
-		double pxY = this.y * pxPerMile;
-		double rad = (90.0 - this.currentHdg) * (Math.PI / 180);
-
-		// Draw body
-		gg.rotate(-rad, pxX, pxY); // Angle signs are reversed by Graphics2D::rotate
-		gg.setStroke(new BasicStroke(1));
-		gg.setColor(Screen.RADAR_COLOR);
-		Rectangle body = new Rectangle();
-		body.setRect(pxX - this.size / 2.0, pxY - this.size / 2.0, this.size, this.size);
-		gg.draw(body);
-
-		// Draw vector arrow
-		double vectorLength = (this.currentSpd / 50) * this.size;
-		gg.draw(new Line2D.Double(pxX, pxY, pxX + vectorLength, pxY));
-
-		// Undo changes to graphics angle
-		gg.rotate(rad, pxX, pxY);
-
-		// Draw dotted line to target if this aircraft is selected and it is not under
-		// tower's control yet
-		if (selected && this.controls != null) {
-			double targetX = this.target.getTargetX() * pxPerMile;
-			double targetY = this.target.getTargetY() * pxPerMile;
-			gg.setStroke(new BasicStroke(1, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND,
-										 0, new float[] {pxPerMile / 2}, pxPerMile / 2));
-			gg.draw(new Line2D.Double(pxX, pxY, targetX, targetY));
-			gg.setStroke(new BasicStroke(1));
-		}
-
-		// Draw separation circle of 1.5 mile radius
-		if (Screen.showSepRings()) {
-			double radius = (!this.isGA) ? 3.0 : 1.0;
-			gg.setColor(new Color(220, 220, 220));
-			gg.draw(new Ellipse2D.Double(pxX - pxPerMile * radius / 2, pxY - pxPerMile * radius / 2,
-										 pxPerMile * radius, pxPerMile * radius));
-		}
-
-		// Draw information string
-		String infoStr = selected ? this.toComplexString() : this.toSimpleString();
-		String[] infoSplit = infoStr.split("\n");
-		int strY = (int) pxY;
-		gg.setColor(Screen.RADAR_COLOR);
-		gg.setFont(new Font("Courier New", Font.PLAIN, (int) (this.size * 1.7)));
-		for (String line : infoSplit) {
-			int strX = (this.currentHdg > 180) ?
-				(int) (pxX + this.size * 2) :
-				(int) (pxX - gg.getFontMetrics().stringWidth(line) - this.size);
-			gg.drawString(line, strX, strY);
-			strY += gg.getFontMetrics().getHeight();
-		}
-
-		// Update physics model
-		this.update();
-
-		// Dispose graphics copy
-		gg.dispose();
-	}
-
-
-	private void update() {
-		int gameSpeed = Screen.gameSpeed();
-		
-		// Physical information: velcoity, time, and distance. All units in nm and hr
-		double rad = (90 - this.currentHdg) * (Math.PI / 180);
-		double vx = this.currentSpd * Math.cos(rad); // In kt
-		double vy = this.currentSpd * Math.sin(rad); // In kt
-		double t_s = (1.0 / Screen.FRAME_RATE); // In sec (real world)
-		double t = (t_s) * (1.0 / 60.0) * (1.0 / 60.0); // In hr (real world)
-		double dx = vx * t; // In nm
-		double dy = vy * t; // In nm
-
-		// Increment the screen position based on the physical position moved (nm) in proportion
-		// to the pxPerMile
-		this.x += dx * gameSpeed;
-		this.y -= dy * gameSpeed;
-
-		// Clearance heading update if still in control of the aircraft (not passed to tower yet)
-		if (this.cleared && this.controls != null)
-			this.targetHdg = AircraftMath.hdgToTarget(this.x, this.y,
-													  this.target.getTargetX(),
-													  this.target.getTargetY());
-		else if (this.cleared && this.controls == null)
-			this.targetHdg = AircraftMath.hdgToTarget(this.x, this.y,
-													  this.target.getX(),
-													  this.target.getY());
-
-		// Update speed, altitude, and heading
-		double altChange = ((Math.random() * (18 - 15)) + 15) * (t_s); // 900-1100 fpm == 15-18 fps
-		double hdgChange = (3) * (t_s); // Based on standard rate of 3 deg / sec
-		this.currentSpd = AircraftMath.approachValue(this.currentSpd,
-													 this.targetSpd,
-													 t_s * gameSpeed);
-		this.currentAlt = AircraftMath.approachValue(this.currentAlt,
-													 this.targetAlt,
-													 altChange * gameSpeed);
-		this.currentHdg = AircraftMath.approachHdg(this.currentHdg,
-												   this.targetHdg,
-												   hdgChange * gameSpeed);
-
-		// Change clearance if needed
-		if (!this.canBeCleared())
-			this.cleared = false;
+	public void update(double seconds) {
+		// Stepping is done by the table, so only aircraft in one can fly
+		if (this.table == null)
+			throw new IllegalStateException("aircraft " + this.id + " is not in a table");
+		this.table.update(this.row, seconds);
 	}
 
 
 	public void setLocation(double x, double y) {
-		this.x = x;
-		this.y = y;
-	}
-
-
-	public void setPreferredSize(int size) {
-		this.size = size;
+		if (this.table != null) {
+			this.table.setX(this.row, x);
+			this.table.setY(this.row, y);
+		}
+		else {
+			this.x = x;
+			this.y = y;
+		}
 	}
 
 
 	public String toSimpleString() {
 		return this.id + "\n" +
-			   AircraftMath.round(this.currentAlt, 25) + " " + (int) this.currentSpd;
+			   AircraftMath.round(this.getCurrentAlt(), 25) + " " + (int) this.getCurrentSpd();
 	}
 
 
 	public String toComplexString() {
 		return this.id + " " + this.type + "\n" +
-			   this.target + " " + AircraftMath.round(this.targetAlt, 25) + "\n" +
-			   AircraftMath.round(this.currentAlt, 25) + " " + (int) this.currentSpd;
+			   this.getTarget() + " " + AircraftMath.round(this.getTargetAlt(), 25) + "\n" +
+			   AircraftMath.round(this.getCurrentAlt(), 25) + " " + (int) this.getCurrentSpd();
 	}
 
 
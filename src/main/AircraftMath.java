@@ -1,23 +1,26 @@
+import java.util.SplittableRandom;
+
+
 public class AircraftMath {
 
 	private AircraftMath() { }
 
 
-	public static String generateFlightNumber(int length) {
+	public static String generateFlightNumber(int length, SplittableRandom random) {
 		String str = "";
 		for (int i = 0; i < length; i++)
-			str += (int) (Math.random() * 10);
+			str += (int) (random.nextDouble() * 10);
 		return str;
 	}
 
 
-	public static String generateTailNumber(int length) {
+	public static String generateTailNumber(int length, SplittableRandom random) {
 		String[] symbols = {"A", "B", "C", "D", "E", "F", "G", "H", "I", "J", "K", "L", "M", "N",
 							"O", "P", "Q", "R", "S", "T", "U", "V", "W", "X", "Y", "Z", "0", "1",
 							"2", "3", "4", "5", "6", "7", "8", "9"};
 		String str = "";
 		for (int i = 0; i < length; i++)
-			str += symbols[(int) (Math.random() * symbols.length)];
+			str += symbols[(int) (random.nextDouble() * symbols.length)];
 		return str;
 	}
 
@@ -0,0 +1,500 @@
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+
+public class AircraftTable {
+
+	// Tables smaller than this are stepped on the calling thread, since handing out work costs
+	// more than it saves. Larger ones are split into chunks of about CHUNK_SIZE rows
+	public static final int DEFAULT_PARALLEL_THRESHOLD = 512;
+	private static final int CHUNK_SIZE = 128;
+
+
+	// Aircraft that each row is viewed through
+	private Aircraft[] aircraft;
+	private Waypoint[] target;
+	private int[] maxAlt; // In ft
+	private SplittableRandom[] random;
+
+	// Per-row state, stored as parallel columns so passes over every aircraft stay linear
+	private boolean[] cleared;
+	private boolean[] handedOff;
+	private double[] x; // In nm
+	private double[] y; // In nm
+	private double[] currentAlt; // In ft
+	private double[] targetAlt; // In ft
+	private double[] currentSpd; // In kt
+	private double[] targetSpd; // In kt
+	private double[] currentHdg; // In deg
+	private double[] targetHdg; // In deg
+
+	// State after the next step, for the columns that the step changes. A step only reads the
+	// columns above and only writes these, so rows can be stepped in parallel without locks,
+	// and the columns are swapped once every row is done, so readers only ever see a whole step
+	private boolean[] nextCleared;
+	private double[] nextX;
+	private double[] nextY;
+	private double[] nextCurrentAlt;
+	private double[] nextCurrentSpd;
+	private double[] nextCurrentHdg;
+	private double[] nextTargetHdg;
+
+	private int size;
+	private int parallelThreshold;
+
+	// A step overwrites the columns with the next buffer, so a command written to a row while a
+	// step runs is lost, and removing a row moves another aircraft into it, so a write through a
+	// view that read its row before the move lands on the wrong aircraft. Tables with a lock may
+	// only be changed by a thread that holds it
+	private Object lock;
+
+
+	public AircraftTable(int capacity) {
+		capacity = Math.max(1, capacity);
+		this.aircraft = new Aircraft[capacity];
+		this.target = new Waypoint[capacity];
+		this.maxAlt = new int[capacity];
+		this.random = new SplittableRandom[capacity];
+		this.cleared = new boolean[capacity];
+		this.handedOff = new boolean[capacity];
+		this.x = new double[capacity];
+		this.y = new double[capacity];
+		this.currentAlt = new double[capacity];
+		this.targetAlt = new double[capacity];
+		this.currentSpd = new double[capacity];
+		this.targetSpd = new double[capacity];
+		this.currentHdg = new double[capacity];
+		this.targetHdg = new double[capacity];
+		this.nextCleared = new boolean[capacity];
+		this.nextX = new double[capacity];
+		this.nextY = new double[capacity];
+		this.nextCurrentAlt = new double[capacity];
+		this.nextCurrentSpd = new double[capacity];
+		this.nextCurrentHdg = new double[capacity];
+		this.nextTargetHdg = new double[capacity];
+		this.size = 0;
+		this.parallelThreshold = AircraftTable.DEFAULT_PARALLEL_THRESHOLD;
+		this.lock = null;
+	}
+
+
+	private void ensureCapacity(int capacity) {
+		if (capacity <= this.aircraft.length)
+			return;
+
+		capacity = Math.max(capacity, this.aircraft.length * 2);
+		this.aircraft = Arrays.copyOf(this.aircraft, capacity);
+		this.target = Arrays.copyOf(this.target, capacity);
+		this.maxAlt = Arrays.copyOf(this.maxAlt, capacity);
+		this.random = Arrays.copyOf(this.random, capacity);
+		this.cleared = Arrays.copyOf(this.cleared, capacity);
+		this.handedOff = Arrays.copyOf(this.handedOff, capacity);
+		this.x = Arrays.copyOf(this.x, capacity);
+		this.y = Arrays.copyOf(this.y, capacity);
+		this.currentAlt = Arrays.copyOf(this.currentAlt, capacity);
+		this.targetAlt = Arrays.copyOf(this.targetAlt, capacity);
+		this.currentSpd = Arrays.copyOf(this.currentSpd, capacity);
+		this.targetSpd = Arrays.copyOf(this.targetSpd, capacity);
+		this.currentHdg = Arrays.copyOf(this.currentHdg, capacity);
+		this.targetHdg = Arrays.copyOf(this.targetHdg, capacity);
+		this.nextCleared = new boolean[capacity];
+		this.nextX = new double[capacity];
+		this.nextY = new double[capacity];
+		this.nextCurrentAlt = new double[capacity];
+		this.nextCurrentSpd = new double[capacity];
+		this.nextCurrentHdg = new double[capacity];
+		this.nextTargetHdg = new double[capacity];
+	}
+
+
+	private void copyRow(AircraftTable from, int fromRow, int toRow) {
+		this.aircraft[toRow] = from.aircraft[fromRow];
+		this.target[toRow] = from.target[fromRow];
+		this.maxAlt[toRow] = from.maxAlt[fromRow];
+		this.random[toRow] = from.random[fromRow];
+		this.cleared[toRow] = from.cleared[fromRow];
+		this.handedOff[toRow] = from.handedOff[fromRow];
+		this.x[toRow] = from.x[fromRow];
+		this.y[toRow] = from.y[fromRow];
+		this.currentAlt[toRow] = from.currentAlt[fromRow];
+		this.targetAlt[toRow] = from.targetAlt[fromRow];
+		this.currentSpd[toRow] = from.currentSpd[fromRow];
+		this.targetSpd[toRow] = from.targetSpd[fromRow];
+		this.currentHdg[toRow] = from.currentHdg[fromRow];
+		this.targetHdg[toRow] = from.targetHdg[fromRow];
+	}
+
+
+	private void checkLock() {
+		if (this.lock != null && !Thread.holdsLock(this.lock))
+			throw new IllegalStateException("aircraft table changed without holding its lock");
+	}
+
+
+	public int size() {
+		return this.size;
+	}
+
+
+	public int getParallelThreshold() {
+		return this.parallelThreshold;
+	}
+
+
+	public void setParallelThreshold(int parallelThreshold) {
+		if (parallelThreshold < 0)
+			throw new IllegalArgumentException("parallelThreshold " + parallelThreshold +
+											   " out of bounds");
+		this.parallelThreshold = parallelThreshold;
+	}
+
+
+	public Object getLock() {
+		return this.lock;
+	}
+
+
+	public void setLock(Object lock) {
+		this.lock = lock;
+	}
+
+
+	public Aircraft get(int row) {
+		return this.aircraft[row];
+	}
+
+
+	public int add(Aircraft aircraft, Waypoint target, int maxAlt, SplittableRandom random) {
+		if (aircraft == null)
+			throw new NullPointerException("aircraft cannot be null");
+		if (target == null)
+			throw new NullPointerException("aircraft target cannot be null");
+		if (random == null)
+			throw new NullPointerException("random cannot be null");
+
+		this.checkLock();
+		this.ensureCapacity(this.size + 1);
+		int row = this.size++;
+		this.aircraft[row] = aircraft;
+		this.target[row] = target;
+		this.maxAlt[row] = maxAlt;
+		this.random[row] = random;
+		return row;
+	}
+
+
+	public int add(Aircraft aircraft) {
+		if (aircraft == null)
+			throw new NullPointerException("aircraft cannot be null");
+
+		// Move the aircraft's row out of whatever table it is currently viewing, or take the
+		// state it kept while it was in none
+		this.checkLock();
+		this.ensureCapacity(this.size + 1);
+		int row = this.size++;
+		AircraftTable from = aircraft.getTable();
+		if (from != null)
+			this.copyRow(from, aircraft.getRow(), row);
+		else {
+			this.aircraft[row] = aircraft;
+			this.target[row] = aircraft.getTarget();
+			this.maxAlt[row] = aircraft.getMaxAlt();
+			this.random[row] = aircraft.getRandom();
+			this.cleared[row] = aircraft.isCleared();
+			this.handedOff[row] = aircraft.isHandedOff();
+			this.x[row] = aircraft.getX();
+			this.y[row] = aircraft.getY();
+			this.currentAlt[row] = aircraft.getCurrentAlt();
+			this.targetAlt[row] = aircraft.getTargetAlt();
+			this.currentSpd[row] = aircraft.getCurrentSpd();
+			this.targetSpd[row] = aircraft.getTargetSpd();
+			this.currentHdg[row] = aircraft.getCurrentHdg();
+			this.targetHdg[row] = aircraft.getTargetHdg();
+		}
+		aircraft.bind(this, row);
+		return row;
+	}
+
+
+	public int remove(int row) {
+		if (row < 0 || row >= this.size)
+			throw new IndexOutOfBoundsException("row " + row + " out of bounds");
+		this.checkLock();
+
+		// The removed aircraft keeps a copy of its row so it stays readable after removal
+		this.aircraft[row].detach();
+
+		// Swap the last row into the hole to keep the rows dense
+		int last = --this.size;
+		int moved = -1;
+		if (row != last) {
+			this.copyRow(this, last, row);
+			this.aircraft[row].bind(this, row);
+			moved = last;
+		}
+		this.aircraft[last] = null;
+		this.target[last] = null;
+		this.random[last] = null;
+		return moved;
+	}
+
+
+	public Waypoint getTarget(int row) {
+		return this.target[row];
+	}
+
+
+	SplittableRandom getRandom(int row) {
+		return this.random[row];
+	}
+
+
+	public int getMaxAlt(int row) {
+		return this.maxAlt[row];
+	}
+
+
+	public boolean isCleared(int row) {
+		return this.cleared[row];
+	}
+
+
+	public void setCleared(int row, boolean cleared) {
+		this.checkLock();
+		this.cleared[row] = cleared;
+	}
+
+
+	public boolean isHandedOff(int row) {
+		return this.handedOff[row];
+	}
+
+
+	public void setHandedOff(int row, boolean handedOff) {
+		this.checkLock();
+		this.handedOff[row] = handedOff;
+	}
+
+
+	public double getX(int row) {
+		return this.x[row];
+	}
+
+
+	public void setX(int row, double x) {
+		this.checkLock();
+		this.x[row] = x;
+	}
+
+
+	public double getY(int row) {
+		return this.y[row];
+	}
+
+
+	public void setY(int row, double y) {
+		this.checkLock();
+		this.y[row] = y;
+	}
+
+
+	public double getCurrentAlt(int row) {
+		return this.currentAlt[row];
+	}
+
+
+	public void setCurrentAlt(int row, double currentAlt) {
+		this.checkLock();
+		this.currentAlt[row] = currentAlt;
+	}
+
+
+	public double getTargetAlt(int row) {
+		return this.targetAlt[row];
+	}
+
+
+	public void setTargetAlt(int row, double targetAlt) {
+		this.checkLock();
+		this.targetAlt[row] = targetAlt;
+	}
+
+
+	public double getCurrentSpd(int row) {
+		return this.currentSpd[row];
+	}
+
+
+	public void setCurrentSpd(int row, double currentSpd) {
+		this.checkLock();
+		this.currentSpd[row] = currentSpd;
+	}
+
+
+	public double getTargetSpd(int row) {
+		return this.targetSpd[row];
+	}
+
+
+	public void setTargetSpd(int row, double targetSpd) {
+		this.checkLock();
+		this.targetSpd[row] = targetSpd;
+	}
+
+
+	public double getCurrentHdg(int row) {
+		return this.currentHdg[row];
+	}
+
+
+	public void setCurrentHdg(int row, double currentHdg) {
+		this.checkLock();
+		this.currentHdg[row] = currentHdg;
+	}
+
+
+	public double getTargetHdg(int row) {
+		return this.targetHdg[row];
+	}
+
+
+	public void setTargetHdg(int row, double targetHdg) {
+		this.checkLock();
+		this.targetHdg[row] = targetHdg;
+	}
+
+
+	public boolean canBeCleared(int row) {
+		return this.target[row].atAlt(this.currentAlt[row], this.maxAlt[row]);
+	}
+
+
+	public void update(double seconds) {
+		this.checkLock();
+		if (this.size >= this.parallelThreshold && this.size > AircraftTable.CHUNK_SIZE)
+			ForkJoinPool.commonPool().invoke(new Step(seconds, 0, this.size));
+		else {
+			for (int row = 0; row < this.size; row++)
+				this.step(row, seconds);
+		}
+
+		// Every row has been stepped, so the next state becomes the current one
+		boolean[] cleared = this.cleared;
+		this.cleared = this.nextCleared;
+		this.nextCleared = cleared;
+		double[] x = this.x;
+		this.x = this.nextX;
+		this.nextX = x;
+		double[] y = this.y;
+		this.y = this.nextY;
+		this.nextY = y;
+		double[] currentAlt = this.currentAlt;
+		this.currentAlt = this.nextCurrentAlt;
+		this.nextCurrentAlt = currentAlt;
+		double[] currentSpd = this.currentSpd;
+		this.currentSpd = this.nextCurrentSpd;
+		this.nextCurrentSpd = currentSpd;
+		double[] currentHdg = this.currentHdg;
+		this.currentHdg = this.nextCurrentHdg;
+		this.nextCurrentHdg = currentHdg;
+		double[] targetHdg = this.targetHdg;
+		this.targetHdg = this.nextTargetHdg;
+		this.nextTargetHdg = targetHdg;
+	}
+
+
+	public void update(int row, double seconds) {
+		// A single row is stepped and copied back, leaving the other rows where they are
+		this.checkLock();
+		this.step(row, seconds);
+		this.cleared[row] = this.nextCleared[row];
+		this.x[row] = this.nextX[row];
+		this.y[row] = this.nextY[row];
+		this.currentAlt[row] = this.nextCurrentAlt[row];
+		this.currentSpd[row] = this.nextCurrentSpd[row];
+		this.currentHdg[row] = this.nextCurrentHdg[row];
+		this.targetHdg[row] = this.nextTargetHdg[row];
+	}
+
+
+	private void step(int row, double seconds) {
+		// Physical information: velcoity, time, and distance. All units in nm and hr. The cosine
+		// and sine of (90 - hdg) are the sine and cosine of the heading, read from a table
+		double vx = this.currentSpd[row] * FastMath.sinDeg(this.currentHdg[row]); // In kt
+		double vy = this.currentSpd[row] * FastMath.cosDeg(this.currentHdg[row]); // In kt
+		double t = (seconds) * (1.0 / 60.0) * (1.0 / 60.0); // In hr (simulated)
+		double dx = vx * t; // In nm
+		double dy = vy * t; // In nm
+
+		// Increment the position based on the physical position moved (nm)
+		double x = this.x[row] + dx;
+		double y = this.y[row] - dy;
+
+		// Clearance heading update if still in control of the aircraft (not passed to tower yet)
+		Waypoint target = this.target[row];
+		boolean cleared = this.cleared[row];
+		double targetHdg = this.targetHdg[row];
+		if (cleared && !this.handedOff[row])
+			targetHdg = FastMath.hdgToTarget(x, y, target.getTargetX(), target.getTargetY());
+		else if (cleared && this.handedOff[row])
+			targetHdg = FastMath.hdgToTarget(x, y, target.getX(), target.getY());
+
+		// Update speed, altitude, and heading
+		// Climb and descent rates are 900-1100 fpm, 15-18 fps
+		double altChange = ((this.random[row].nextDouble() * (18 - 15)) + 15) * seconds;
+		double hdgChange = (3) * seconds; // Based on standard rate of 3 deg / sec
+		double currentAlt = AircraftMath.approachValue(this.currentAlt[row],
+													   this.targetAlt[row],
+													   altChange);
+
+		// Change clearance if needed
+		if (!target.atAlt(currentAlt, this.maxAlt[row]))
+			cleared = false;
+
+		this.nextX[row] = x;
+		this.nextY[row] = y;
+		this.nextTargetHdg[row] = targetHdg;
+		this.nextCurrentSpd[row] = AircraftMath.approachValue(this.currentSpd[row],
+															  this.targetSpd[row],
+															  seconds);
+		this.nextCurrentAlt[row] = currentAlt;
+		this.nextCurrentHdg[row] = FastMath.approachHdg(this.currentHdg[row],
+														targetHdg,
+														hdgChange);
+		this.nextCleared[row] = cleared;
+	}
+
+
+
+	private class Step extends RecursiveAction {
+
+		private double seconds;
+		private int from;
+		private int to;
+
+
+		public Step(double seconds, int from, int to) {
+			this.seconds = seconds;
+			this.from = from;
+			this.to = to;
+		}
+
+
+		@Override
+		protected void compute() {
+			// Split in halves until a chunk is small enough to step directly
+			if (this.to - this.from <= AircraftTable.CHUNK_SIZE) {
+				for (int row = this.from; row < this.to; row++)
+					AircraftTable.this.step(row, this.seconds);
+				return;
+			}
+			int mid = (this.from + this.to) / 2;
+			RecursiveAction.invokeAll(new Step(this.seconds, this.from, mid),
+									  new Step(this.seconds, mid, this.to));
+		}
+
+	}
+
+}
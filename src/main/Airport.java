@@ -1,167 +1,234 @@
-import javax.swing.JComponent;
-import java.awt.Graphics;
-import java.awt.Graphics2D;
-import java.awt.geom.Line2D;
-import java.awt.geom.Ellipse2D;
-import java.awt.Color;
-import java.awt.Font;
-import java.awt.event.MouseListener;
-import java.awt.event.MouseEvent;
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.SplittableRandom;
 
 
-public class Airport extends JComponent implements MouseListener {
-
-	public static enum Code {
-		KJFK(false),
-		KSFO(false),
-		EGLL(false),
-		KPAO(true);
-
-
-		private boolean makeGA;
-		
-
-		private Code(boolean makeGA) {
-			this.makeGA = makeGA;
-		}
-
-
-		public boolean isGA() {
-			return this.makeGA;
-		}
-		
-	}
-	
-
-	// Display information
-	private static int pxPerMile;
+public class Airport {
 
 	// Airport information
-	private Code code;
+	private AirportDefinition definition;
+	private String code;
 	private int radarRange; // In nm
 	private int vertSeparation; // In ft
 	private int horizSeparation; // In nm
 	private double acPerMin;
 	private Aircraft selected;
-	private Aircraft[] aircraft;
+	private int maxAircraft;
+	private AircraftTable aircraft;
+	private SeparationGrid grid;
+	private ConflictProbe probe;
+	private TrafficGenerator traffic;
 	private Waypoint[] waypoints;
 	private Waypoint[] inbound;
 	private Waypoint[] outbound;
+	private List<Warning> warnings;
+
+	// Every random choice made by the simulation is drawn from this generator, so two airports
+	// created with the same code and seed run identically given the same inputs
+	private long seed;
+	private SplittableRandom random;
+	private Recorder recorder;
+
+	// Scale, speed, and display settings of this simulation, shared with its engine and views
+	private SimulationContext context;
 
 	// Score information
 	private int flights;
 	private boolean hasConflict;
 
+	// Counted for export through the context's metrics. Gauges are read from other threads
+	// without the lock, so they can be a tick behind
+	private Metrics.Counter flightsCounter;
+	private Metrics.Counter conflictCounter;
+	private Metrics.Counter conflictsCounter;
+	private Metrics.Counter lostCounter;
+	private int lostAircraft;
+
+	// Pairs in conflict at the last separation check, flattened as [a0, b0, a1, b1, ...], and
+	// the pairs from the check before it, so a conflict is only counted when it starts. Tracks
+	// that are lost, so leaving the radar is only counted once per crossing
+	private List<Aircraft> conflictPairs;
+	private List<Aircraft> lastConflictPairs;
+	private Set<Aircraft> lostTracks;
+
+
+	public Airport(AirportDefinition definition) {
+		this(definition, new SplittableRandom().nextLong());
+	}
 
-	public Airport(Code code) {
-		this.setFocusable(true);
-		this.addMouseListener(this);
 
+	public Airport(AirportDefinition definition, long seed) {
 		// Initialize code information
-		if (code == null)
-			throw new NullPointerException("code code cannot be null");
-		this.code = code;
-		this.radarRange = (!this.code.isGA()) ? 40 : 20;
-		this.vertSeparation = (!this.code.isGA()) ? 1000 : 500;
-		this.horizSeparation = (!this.code.isGA()) ? 3 : 1;
-
-		// Initialize waypoint/aircraft information
+		if (definition == null)
+			throw new NullPointerException("definition cannot be null");
+		this.definition = definition;
+		this.code = definition.getCode();
+		this.seed = seed;
+		this.random = new SplittableRandom(seed);
+		this.context = new SimulationContext();
+		this.radarRange = definition.getRadarRange();
+		this.vertSeparation = definition.getVertSeparation();
+		this.horizSeparation = definition.getHorizSeparation();
+		this.acPerMin = definition.getAcPerMin();
+
+		// Initialize waypoint/aircraft information. Airway altitudes are drawn from the seeded
+		// generator, so they are created in the order they are defined
 		this.selected = null;
-		this.initialize(code);
+		AirportDefinition.Fix[] runways = definition.getRunways();
+		AirportDefinition.Fix[] airways = definition.getAirways();
+		this.inbound = new Waypoint[runways.length];
+		for (int i = 0; i < runways.length; i++)
+			this.inbound[i] = new Runway(runways[i].identifier, runways[i].hdg,
+										 runways[i].x, runways[i].y, runways[i].length);
+		this.outbound = new Waypoint[airways.length];
+		for (int i = 0; i < airways.length; i++)
+			this.outbound[i] = new Airway(airways[i].identifier, airways[i].hdg,
+										  airways[i].x, airways[i].y, this.random);
 		this.waypoints = new Waypoint[this.inbound.length + this.outbound.length];
 		for (int i = 0; i < this.outbound.length; i++)
 			this.waypoints[i] = this.outbound[i];
 		for (int i = this.outbound.length; i < this.waypoints.length; i++)
 			this.waypoints[i] = this.inbound[i - this.outbound.length];
-		this.calculateConstants();
-		this.aircraft = new Aircraft[this.waypoints.length];
+		this.maxAircraft = this.waypoints.length;
+		this.aircraft = new AircraftTable(this.maxAircraft);
+		this.aircraft.setLock(this);
+		this.grid = new SeparationGrid(this.horizSeparation * (5.0 / 3.0), this.vertSeparation,
+									   this.maxAircraft);
+		this.probe = new ConflictProbe(this.horizSeparation, this.vertSeparation);
+		this.traffic = new TrafficGenerator(this, this.acPerMin);
+		this.warnings = new ArrayList<>();
 		this.flights = 0;
 		this.hasConflict = false;
-
-		// Check that the call to initialize() was successful for this code
-		if (this.acPerMin <= 0)
-			throw new IllegalArgumentException("acPerMin not initialized correctly for code " +
-											   this.code.name());
+		this.lostAircraft = 0;
+		this.conflictPairs = new ArrayList<>();
+		this.lastConflictPairs = new ArrayList<>();
+		this.lostTracks = Collections.newSetFromMap(new IdentityHashMap<>());
+		this.registerMetrics();
 
 		// Add starting aircraft
 		int minAircraft = 1;
 		int maxAircraft = Math.max(minAircraft, this.waypoints.length / 2);
-		int numAircraft = (int) (Math.random() * (maxAircraft - minAircraft + 1)) + minAircraft;
+		int numAircraft = this.random.nextInt(minAircraft, maxAircraft + 1);
 		for (int i = 0; i < numAircraft; i++)
 			this.addAircraft();
 	}
 
 
-	private void initialize(Code code) {
-		switch (code) {
-		case KJFK:
-			this.acPerMin = 0.6;
-			this.inbound = new Waypoint[] {
-				new Runway("13L", this.radarRange / 2 + 1.23, this.radarRange / 2 - 0.58, 10000),
-				new Runway("13R", this.radarRange / 2, this.radarRange / 2, 14511)
-			};
-			this.outbound = new Waypoint[] {
-				new Airway("ALB", 180, this.radarRange / 5,     1),
-				new Airway("MHT", 180, 3 * this.radarRange / 5, 1),
-				new Airway("ACK", 270, this.radarRange - 1,     2 * this.radarRange / 5),
-				new Airway("DNY", 0,   2 * this.radarRange / 5, this.radarRange - 1)
-			};
-			break;
-		case KSFO:
-			this.acPerMin = 0.9;
-			this.inbound = new Waypoint[] {
-				new Runway("28R", this.radarRange / 2, this.radarRange / 2, 11870),
-				new Runway("28L", this.radarRange / 2 + 0.14 * 5, this.radarRange / 2 + 0.22 * 5,
-						   11381)
-			};
-			this.outbound = new Waypoint[] {
-				new Airway("RNO", 220, this.radarRange - 1, 1),
-				new Airway("LAX", 290, this.radarRange - 1, this.radarRange - 1),
-				new Airway("HNL", 90,  1,                   this.radarRange / 2)
-			};
-			break;
-		case EGLL:
-			this.acPerMin = 1.33;
-			this.inbound = new Waypoint[] {
-				new Runway("27R", this.radarRange / 2, this.radarRange / 2, 12802),
-				new Runway("27L", this.radarRange / 2, this.radarRange / 2 + 0.76, 12008)
-			};
-			this.outbound = new Waypoint[] {
-				new Airway("BNN", 180, this.radarRange / 2,     1),
-				new Airway("LAM", 180, 4 * this.radarRange / 5, 1),
-				new Airway("BIG", 0,   4 * this.radarRange / 5, this.radarRange - 1),
-				new Airway("CPT", 90,  1,                       this.radarRange / 2)
-			};
-			break;
-		case KPAO:
-			this.acPerMin = 0.36;
-			this.inbound = new Waypoint[] {
-				new Runway("31", this.radarRange / 2, this.radarRange / 2, 2443)
-			};
-			this.outbound = new Waypoint[] {
-				new Airway("SQL", 100, 1,                       this.radarRange / 4),
-				new Airway("SJC", 280, this.radarRange - 1,     3 * this.radarRange / 4),
-				new Airway("LVK", 190, 4 * this.radarRange / 5, 1)
-			};
-			break;
-		default:
-			throw new IllegalArgumentException("invalid code code " + code.name());
-		}
+	private void registerMetrics() {
+		Metrics metrics = this.context.getMetrics();
+		this.flightsCounter = metrics.counter("flights_total", "Aircraft that reached their " +
+											  "target waypoint");
+		this.conflictsCounter = metrics.counter("conflicts_total", "Pairs of aircraft that " +
+												"lost separation, counted when they do");
+		this.lostCounter = metrics.counter("lost_total", "Aircraft that left the radar range " +
+										   "without a clearance, counted when they do");
+		this.conflictCounter = metrics.counter("conflict_ticks_total", "Ticks with at least " +
+											   "one pair of aircraft in conflict");
+		metrics.gauge("tracks", "Aircraft in the airspace", () -> this.aircraft.size());
+		metrics.gauge("warnings", "Pairs of aircraft close enough for a separation warning",
+					  () -> this.warnings.size());
+		metrics.gauge("lost", "Aircraft outside the radar range without a clearance",
+					  () -> this.lostAircraft);
 	}
 
 
-	private void calculateConstants() {
-		int w = super.getBounds().width;
-		int h = super.getBounds().height;
-		
-		Airport.pxPerMile = Math.min(w, h) / this.radarRange;
-		if (Airport.pxPerMile == 0)
-			Airport.pxPerMile = 1;
+	public String getCode() {
+		return this.code;
+	}
+
+
+	public AirportDefinition getDefinition() {
+		return this.definition;
+	}
+
+
+	public long getSeed() {
+		return this.seed;
+	}
+
+
+	public SplittableRandom getRandom() {
+		return this.random;
+	}
+
+
+	public SimulationContext getContext() {
+		return this.context;
+	}
+
+
+	public Recorder getRecorder() {
+		return this.recorder;
+	}
+
+
+	public synchronized void setRecorder(Recorder recorder) {
+		this.recorder = recorder;
+	}
+
+
+	public int getRadarRange() {
+		return this.radarRange;
+	}
+
+
+	public int getHorizSeparation() {
+		return this.horizSeparation;
+	}
+
+
+	public int getVertSeparation() {
+		return this.vertSeparation;
+	}
+
+
+	public Waypoint[] getWaypoints() {
+		return this.waypoints;
+	}
+
+
+	public int getMaxAircraft() {
+		return this.maxAircraft;
+	}
+
+
+	public void setMaxAircraft(int maxAircraft) {
+		if (maxAircraft < 0)
+			throw new IllegalArgumentException("maxAircraft " + maxAircraft + " out of bounds");
+		this.maxAircraft = maxAircraft;
+	}
+
+
+	public double getAcPerMin() {
+		return this.acPerMin;
+	}
+
+
+	public TrafficGenerator getTraffic() {
+		return this.traffic;
+	}
+
+
+	public AircraftTable getAircraft() {
+		return this.aircraft;
+	}
+
+
+	public List<Warning> getWarnings() {
+		return this.warnings;
+	}
+
+
+	public ConflictProbe getProbe() {
+		return this.probe;
 	}
 
 
-	public static int pxPerMile() {
-		return Airport.pxPerMile;
+	public List<ConflictProbe.Prediction> getPredictions() {
+		return this.probe.getPredictions();
 	}
 
 
@@ -170,6 +237,11 @@ public class Airport extends JComponent implements MouseListener {
 	}
 
 
+	public synchronized void setSelected(Aircraft selected) {
+		this.selected = selected;
+	}
+
+
 	public int getFlights() {
 		return this.flights;
 	}
@@ -180,58 +252,108 @@ public class Airport extends JComponent implements MouseListener {
 	}
 
 
-	private boolean addAircraft() {
-		// Find null array index
-		int index = -1;
-		for (int i = 0; i < this.aircraft.length; i++) {
-			if (this.aircraft[i] == null) {
-				index = i;
-				break;
-			}
-		}
-		
-		if (index == -1)
-			return false;
-
+	private Aircraft createAircraft() {
 		// Get origin waypoint
-		Waypoint origin = this.waypoints[(int) (Math.random() * this.waypoints.length)];
+		Waypoint origin = this.waypoints[(int) (this.random.nextDouble() * this.waypoints.length)];
+		return this.createAircraft(origin);
+	}
+
+
+	Aircraft createAircraft(Waypoint origin) {
 		if (origin == null)
-			throw new NullPointerException("waypoint cannot be null, for code " + this.code.name());
+			throw new NullPointerException("waypoint cannot be null, for code " + this.code);
 
 		// Get target waypoint
 		Waypoint target = origin instanceof Runway ?
-			this.outbound[(int) (Math.random() * this.outbound.length)] :
-			this.inbound[(int) (Math.random() * this.inbound.length)];
+			this.outbound[(int) (this.random.nextDouble() * this.outbound.length)] :
+			this.inbound[(int) (this.random.nextDouble() * this.inbound.length)];
 		if (target == null)
-			throw new NullPointerException("waypoint cannot be null, for code " + this.code.name());
+			throw new NullPointerException("waypoint cannot be null, for code " + this.code);
 
-		// Add aircraft
-		Aircraft a = new Aircraft(target, this.code.isGA());
+		// Create aircraft at the origin
+		Aircraft a = new Aircraft(target, this.definition.isGA(), this.random);
 		int hdg = origin.getExitHdg();
 		a.setCurrentHdg(hdg);
 		a.setLocation(origin.getX(), origin.getY());
-		if (this.noConflict(a)) {
-			this.aircraft[index] = a;
-			return true;
-		}
+		return a;
+	}
+
+
+	private boolean addAircraft() {
+		if (this.aircraft.size() >= this.maxAircraft)
+			return false;
+
+		Aircraft a = this.createAircraft();
+		if (this.noConflict(a))
+			return this.addAircraft(a);
 		return false;
 	}
 
 
-	private boolean noConflict(Aircraft aircraft1) {
-		for (Aircraft aircraft2 : this.aircraft) {
-			if (aircraft2 == null || aircraft2 == aircraft1)
+	public synchronized boolean addAircraft(Aircraft aircraft) {
+		if (aircraft == null)
+			throw new NullPointerException("aircraft cannot be null");
+		if (this.aircraft.size() >= this.maxAircraft)
+			return false;
+
+		int row = this.aircraft.add(aircraft);
+		this.grid.add(row, aircraft.getX(), aircraft.getY(), aircraft.getCurrentAlt());
+		return true;
+	}
+
+
+	private void removeAircraft(int row) {
+		// Removal swaps the last row into this one, so the grid has to follow it
+		if (!this.lostTracks.isEmpty())
+			this.lostTracks.remove(this.aircraft.get(row));
+		this.grid.remove(row);
+		int moved = this.aircraft.remove(row);
+		if (moved != -1)
+			this.grid.renumber(moved, row);
+	}
+
+
+	synchronized void removeAircraft(Aircraft aircraft) {
+		if (aircraft.getTable() != this.aircraft)
+			throw new IllegalArgumentException("aircraft " + aircraft.getId() + " is not at " +
+											   this.code);
+		this.removeAircraft(aircraft.getRow());
+	}
+
+
+	synchronized void restore(int flights, boolean hasConflict) {
+		// Positions were written straight into the table, so rebuild everything derived from them
+		this.grid.clear();
+		for (int row = 0; row < this.aircraft.size(); row++)
+			this.grid.add(row, this.aircraft.getX(row), this.aircraft.getY(row),
+						  this.aircraft.getCurrentAlt(row));
+		this.checkSeparation();
+		this.probe.probe(this.aircraft);
+		this.flights = flights;
+		this.hasConflict = hasConflict;
+	}
+
+
+	boolean noConflict(Aircraft aircraft1) {
+		double alt1 = aircraft1.getCurrentAlt();
+		double x1 = aircraft1.getX();
+		double y1 = aircraft1.getY();
+
+		int count = this.grid.collect(x1, y1, alt1);
+		for (int k = 0; k < count; k++) {
+			int row = this.grid.found(k);
+			if (this.aircraft.get(row) == aircraft1)
 				continue;
 
-			double alt1 = aircraft1.getCurrentAlt();
-			double alt2 = aircraft2.getCurrentAlt();
-			double x1 = aircraft1.getX();
-			double x2 = aircraft2.getX();
-			double y1 = aircraft1.getY();
-			double y2 = aircraft2.getY();
-			double separation = Math.sqrt(Math.pow(x1 - x2, 2) + Math.pow(y1 - y2, 2));
+			double alt2 = this.aircraft.getCurrentAlt(row);
+			double x2 = this.aircraft.getX(row);
+			double y2 = this.aircraft.getY(row);
+			double dx = x1 - x2;
+			double dy = y1 - y2;
 
-			if (Math.abs(alt1 - alt2) < this.vertSeparation && separation < this.horizSeparation)
+			// Compared squared, so no root is taken
+			if (Math.abs(alt1 - alt2) < this.vertSeparation &&
+				dx * dx + dy * dy < this.horizSeparation * this.horizSeparation)
 				return false;
 		}
 
@@ -239,188 +361,175 @@ public class Airport extends JComponent implements MouseListener {
 	}
 
 
-	private boolean checkSeparation(Graphics g) {
-		Graphics2D gg = (Graphics2D) g.create();
-		gg.setFont(new Font("Courier New", Font.BOLD, (int) (Airport.pxPerMile * 0.7)));
+	private boolean checkSeparation() {
 		boolean hasSeparation = true;
+		this.warnings.clear();
+		List<Aircraft> pairs = this.lastConflictPairs;
+		this.lastConflictPairs = this.conflictPairs;
+		this.conflictPairs = pairs;
+		this.conflictPairs.clear();
+		double warningDist = this.horizSeparation * (5.0 / 3.0); // In nm
+		double warningDist2 = warningDist * warningDist;
 		
-		for (int i = 0; i < this.aircraft.length; i++) {
-			for (int j = i + 1; j < this.aircraft.length; j++) {
-				Aircraft aircraft1 = this.aircraft[i];
-				Aircraft aircraft2 = this.aircraft[j];
-				if (aircraft1 == null || aircraft2 == null)
+		for (int i = 0; i < this.aircraft.size(); i++) {
+			double alt1 = this.aircraft.getCurrentAlt(i);
+			double x1 = this.aircraft.getX(i);
+			double y1 = this.aircraft.getY(i);
+
+			// Only aircraft in neighboring grid cells can be close enough to need a warning
+			int count = this.grid.collect(x1, y1, alt1);
+			for (int k = 0; k < count; k++) {
+				int j = this.grid.found(k);
+				if (j <= i)
 					continue;
 				
-				double alt1 = aircraft1.getCurrentAlt();
-				double alt2 = aircraft2.getCurrentAlt();
-				double x1 = aircraft1.getX();
-				double x2 = aircraft2.getX();
-				double y1 = aircraft1.getY();
-				double y2 = aircraft2.getY();
-				double dx = Math.abs(x1 - x2);
-				double dy = Math.abs(y1 - y2);
-				double separation = Math.sqrt(Math.pow(dx, 2) + Math.pow(dy, 2));
-
-				// Conflict detection
-				if (Math.abs(alt1 - alt2) < this.vertSeparation &&
-					separation < this.horizSeparation * (5.0 / 3.0))
-				{
-					// Set color based on distance
-					if (separation < this.horizSeparation) {
-						gg.setColor(new Color(255, 0, 0));
+				double alt2 = this.aircraft.getCurrentAlt(j);
+				double x2 = this.aircraft.getX(j);
+				double y2 = this.aircraft.getY(j);
+				double dx = x1 - x2;
+				double dy = y1 - y2;
+				double separation2 = dx * dx + dy * dy;
+
+				// Conflict detection, comparing squared distances so the root is only taken for
+				// pairs that get a warning
+				if (Math.abs(alt1 - alt2) < this.vertSeparation && separation2 < warningDist2) {
+					double separation = Math.sqrt(separation2);
+					boolean violation = separation < this.horizSeparation;
+					if (violation) {
 						hasSeparation = false;
+						this.conflictPairs.add(this.aircraft.get(i));
+						this.conflictPairs.add(this.aircraft.get(j));
 					}
-					else {
-						// Draw current separation
-						String separationStr = Double.toString(Math.round(separation * 10) / 10.0);
-						int strW = gg.getFontMetrics().stringWidth(separationStr);
-						int strH = gg.getFontMetrics().getHeight();
-						int strX =
-							(int) ((Math.min(x1, x2) + dx / 2) * Airport.pxPerMile) - strW / 2;
-						int strY =
-							(int) ((Math.min(y1, y2) + dy / 2) * Airport.pxPerMile) - strH / 2;
-
-						// Draw solid rectangle background with black separation text
-						gg.setColor(Screen.RADAR_COLOR);
-						gg.fillRect(strX, strY, strW, strH);
-						gg.setColor(new Color(0, 0, 0));
-						gg.drawString(separationStr, strX, strY + (int) (strH * 0.7));
-
-						gg.setColor(Screen.RADAR_COLOR);
-					}
-
-					// Draw connecting line
-					gg.draw(new Line2D.Double(x1 * Airport.pxPerMile, y1 * Airport.pxPerMile,
-											  x2 * Airport.pxPerMile, y2 * Airport.pxPerMile));
+					this.warnings.add(new Warning(x1, y1, x2, y2, separation, violation));
 				}
 			}
 		}
 
-		// Dispose graphics copy
-		gg.dispose();
-
 		// Return status
 		return hasSeparation;
 	}
 
 
-	@Override
-	public void paintComponent(Graphics g) {
-		Graphics2D gg = (Graphics2D) g.create();
-		
-		int w = super.getBounds().width;
-		int h = super.getBounds().height;
-
-		// Draw background
-		gg.setColor(Screen.RADAR_COLOR.darker().darker().darker().darker());
-	    for (int x = Airport.pxPerMile; x < w; x += Airport.pxPerMile)
-			gg.drawLine(x, 0, x, h);
-		for (int y = Airport.pxPerMile; y < h; y += Airport.pxPerMile)
-			gg.drawLine(0, y, w, y);
-
-		// Draw waypoints
-		for (Waypoint waypoint : this.waypoints) {
-			if (waypoint != null)
-				waypoint.paintComponent(g);
+	private int countNewConflicts() {
+		// Rows move as aircraft are removed, so a pair may be listed in either order
+		int count = 0;
+		for (int i = 0; i < this.conflictPairs.size(); i += 2) {
+			Aircraft a = this.conflictPairs.get(i);
+			Aircraft b = this.conflictPairs.get(i + 1);
+			boolean known = false;
+			for (int j = 0; j < this.lastConflictPairs.size() && !known; j += 2) {
+				Aircraft c = this.lastConflictPairs.get(j);
+				Aircraft d = this.lastConflictPairs.get(j + 1);
+				known = (a == c && b == d) || (a == d && b == c);
+			}
+			if (!known)
+				count++;
 		}
+		return count;
+	}
 
-		// Draw aircraft
-		boolean aircraftLost = false;
-		for (int i = 0; i < this.aircraft.length; i++) {
-			Aircraft aircraft = this.aircraft[i];
-			if (aircraft == null)
-				continue;
 
-			// Draw and update size as needed
-			aircraft.setPreferredSize(Airport.pxPerMile / 2);
-			aircraft.paintComponent(g, this.selected == aircraft);
+	public boolean isLost(Aircraft aircraft) {
+		double aircraftX = aircraft.getX();
+		double aircraftY = aircraft.getY();
+		return !aircraft.isCleared() &&
+			(aircraftX < 0 || aircraftX > this.radarRange ||
+			 aircraftY < 0 || aircraftY > this.radarRange);
+	}
+
 
-			// Check if near waypoint and remove
+	public synchronized void update(double seconds) {
+		Profiler profiler = this.context.getProfiler();
+		long stageNanos = System.nanoTime();
+
+		// Update aircraft physics in one pass over the table
+		this.aircraft.update(seconds);
+
+		int lostAircraft = 0;
+		int row = 0;
+		while (row < this.aircraft.size()) {
+			Aircraft aircraft = this.aircraft.get(row);
+			this.grid.move(row, aircraft.getX(), aircraft.getY(), aircraft.getCurrentAlt());
+
+			// Check if this aircraft has left the airspace uncleared
+			if (this.isLost(aircraft)) {
+				lostAircraft++;
+				if (this.lostTracks.add(aircraft))
+					this.lostCounter.increment();
+			}
+			else if (!this.lostTracks.isEmpty())
+				this.lostTracks.remove(aircraft);
+
+			// Check if near waypoint and remove. The last row is moved into this one, so this
+			// row is visited again
 			if (aircraft.atTarget()) {
-				this.aircraft[i] = null;
+				this.removeAircraft(row);
 				if (this.selected == aircraft)
 					this.selected = null;
 				this.flights++;
+				this.flightsCounter.increment();
+				continue;
 			}
-			
-			// Check if this aircraft has left the airspace uncleared
-			double aircraftX = aircraft.getX();
-			double aircraftY = aircraft.getY();
-			if (!aircraft.isCleared() &&
-				(aircraftX < 0 || aircraftX > this.radarRange ||
-				 aircraftY < 0 || aircraftY > this.radarRange))
-			{
-				aircraftLost = true;
-
-				// Draw red ring
-				double sepRingX = (aircraftX - this.horizSeparation / 2.0) * Airport.pxPerMile;
-				double sepRingY = (aircraftY - this.horizSeparation / 2.0) * Airport.pxPerMile;
-				gg.setColor(new Color(255, 0, 0));
-				gg.draw(new Ellipse2D.Double(sepRingX, sepRingY,
-											 Airport.pxPerMile * this.horizSeparation,
-											 Airport.pxPerMile * this.horizSeparation));
-			}
+			row++;
 		}
 
-		// Check separation, drawing warning lines as needed
-		boolean hasSeparation = this.checkSeparation(g);
+		stageNanos = profiler.record(Profiler.Stage.PHYSICS, stageNanos);
+
+		// Check separation, recording warnings to be drawn
+		boolean hasSeparation = this.checkSeparation();
+		stageNanos = profiler.record(Profiler.Stage.SEPARATION, stageNanos);
+
+		// Look ahead for pairs that are going to lose separation
+		this.probe.update(this.aircraft, seconds);
+		stageNanos = profiler.record(Profiler.Stage.PROBE, stageNanos);
 
 		// Check for failure condition
-		if (!hasSeparation || aircraftLost)
+		this.lostAircraft = lostAircraft;
+		if (!hasSeparation) {
+			this.conflictCounter.increment();
+			this.conflictsCounter.add(this.countNewConflicts());
+		}
+		if (!hasSeparation || lostAircraft > 0)
 			this.hasConflict = true;
 
-		// Add new aircraft based on the number of aircraft (ac) per minute for this airport
-		double secPerAC = (1 / this.acPerMin) * 60;
-		int addChance = (int) (Math.random() * (Screen.FRAME_RATE * secPerAC / Screen.gameSpeed()));
-		if (addChance == 0)
-			this.addAircraft();
+		// Add new aircraft based on the number of aircraft (ac) per minute for this airport.
+		// Arrivals that would spawn in conflict wait at their waypoint until it is clear
+		this.traffic.update(seconds);
+		profiler.record(Profiler.Stage.SPAWN, stageNanos);
 
-		// Dispose graphics copy
-		gg.dispose();
+		if (this.recorder != null)
+			this.recorder.record(this, seconds);
 	}
 
 
 	@Override
-	public void setBounds(int x, int y, int w, int h) {
-		super.setBounds(x, y, w, h);
-		this.calculateConstants();
+	public String toString() {
+		return this.code;
 	}
 
 
-	@Override
-	public void mousePressed(MouseEvent e) {
-		double clickX = e.getX();
-		double clickY = e.getY();
 
-		this.selected = null;
+	public static class Warning {
 
-		for (Aircraft aircraft : this.aircraft) {
-			if (aircraft == null)
-				continue;
-			
-			double aircraftX = aircraft.getPxX();
-			double aircraftY = aircraft.getPxY();
-			double aircraftSize = aircraft.getSize();
-
-			if (clickX > aircraftX - aircraftSize && clickX < aircraftX + aircraftSize * 2 &&
-				clickY > aircraftY - aircraftSize && clickY < aircraftY + aircraftSize * 2)
-			{
-			    this.selected = aircraft;
-			}
-		}		
-	}
+		public double x1; // In nm
+		public double y1; // In nm
+		public double x2; // In nm
+		public double y2; // In nm
+		public double separation; // In nm
+		public boolean violation;
 
 
-	@Override
-	public void mouseReleased(MouseEvent e) { }
-
-	@Override
-	public void mouseClicked(MouseEvent e) { }
-
-	@Override
-	public void mouseEntered(MouseEvent e) { }
+		public Warning(double x1, double y1, double x2, double y2,
+					   double separation, boolean violation)
+		{
+			this.x1 = x1;
+			this.y1 = y1;
+			this.x2 = x2;
+			this.y2 = y2;
+			this.separation = separation;
+			this.violation = violation;
+		}
 
-	@Override
-	public void mouseExited(MouseEvent e) { }
+	}
 
 }
@@ -0,0 +1,311 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.ArrayList;
+
+
+public class AirportDefinition {
+
+	public static final String EXTENSION = ".apt";
+
+
+	private String code;
+	private boolean isGA;
+	private double acPerMin;
+	private int radarRange; // In nm
+	private int vertSeparation; // In ft
+	private int horizSeparation; // In nm
+	private Fix[] runways;
+	private Fix[] airways;
+
+
+	public AirportDefinition(String code, boolean isGA, double acPerMin, int radarRange,
+							 int vertSeparation, int horizSeparation, Fix[] runways, Fix[] airways)
+	{
+		if (code == null)
+			throw new NullPointerException("code cannot be null");
+		if (runways == null || airways == null)
+			throw new NullPointerException("waypoints cannot be null, for code " + code);
+		if (acPerMin <= 0)
+			throw new IllegalArgumentException("acPerMin " + acPerMin +
+											   " out of bounds, for code " + code);
+		if (radarRange <= 0)
+			throw new IllegalArgumentException("radarRange " + radarRange +
+											   " out of bounds, for code " + code);
+		if (vertSeparation <= 0 || horizSeparation <= 0)
+			throw new IllegalArgumentException("separation " + horizSeparation + " nm, " +
+											   vertSeparation + " ft out of bounds, for code " +
+											   code);
+		// Aircraft fly from runways to airways and back, so an airport needs at least one of each
+		if (runways.length == 0 || airways.length == 0)
+			throw new IllegalArgumentException("code " + code + " needs a runway and an airway");
+
+		this.code = code;
+		this.isGA = isGA;
+		this.acPerMin = acPerMin;
+		this.radarRange = radarRange;
+		this.vertSeparation = vertSeparation;
+		this.horizSeparation = horizSeparation;
+		this.runways = runways;
+		this.airways = airways;
+	}
+
+
+	public String getCode() {
+		return this.code;
+	}
+
+
+	public boolean isGA() {
+		return this.isGA;
+	}
+
+
+	public double getAcPerMin() {
+		return this.acPerMin;
+	}
+
+
+	public int getRadarRange() {
+		return this.radarRange;
+	}
+
+
+	public int getVertSeparation() {
+		return this.vertSeparation;
+	}
+
+
+	public int getHorizSeparation() {
+		return this.horizSeparation;
+	}
+
+
+	public Fix[] getRunways() {
+		return this.runways;
+	}
+
+
+	public Fix[] getAirways() {
+		return this.airways;
+	}
+
+
+	public static AirportDefinition parse(Path path) {
+		String name = path.getFileName().toString();
+		if (!name.endsWith(AirportDefinition.EXTENSION))
+			throw new IllegalArgumentException("file " + path + " is not an airport definition");
+		String code = name.substring(0, name.length() - AirportDefinition.EXTENSION.length());
+
+		List<String> lines;
+		try {
+			lines = Files.readAllLines(path, StandardCharsets.UTF_8);
+		}
+		catch (IOException e) {
+			throw new UncheckedIOException("cannot read airport definition " + path, e);
+		}
+
+		// Every line is a keyword followed by its values, and anything after a # is a comment
+		Boolean isGA = null;
+		double acPerMin = 0;
+		int radarRange = 0;
+		int vertSeparation = 0;
+		int horizSeparation = 0;
+		List<Fix> runways = new ArrayList<>();
+		List<Fix> airways = new ArrayList<>();
+		for (int i = 0; i < lines.size(); i++) {
+			String line = lines.get(i);
+			int comment = line.indexOf('#');
+			if (comment != -1)
+				line = line.substring(0, comment);
+			line = line.trim();
+			if (line.isEmpty())
+				continue;
+
+			String[] values = line.split("\\s+");
+			String where = path + ":" + (i + 1);
+			try {
+				switch (values[0]) {
+				case "ga":
+					AirportDefinition.expect(values, 2, 2, where);
+					isGA = Boolean.parseBoolean(values[1]);
+					break;
+				case "acPerMin":
+					AirportDefinition.expect(values, 2, 2, where);
+					acPerMin = Double.parseDouble(values[1]);
+					break;
+				case "radarRange":
+					AirportDefinition.expect(values, 2, 2, where);
+					radarRange = Integer.parseInt(values[1]);
+					break;
+				case "vertSeparation":
+					AirportDefinition.expect(values, 2, 2, where);
+					vertSeparation = Integer.parseInt(values[1]);
+					break;
+				case "horizSeparation":
+					AirportDefinition.expect(values, 2, 2, where);
+					horizSeparation = Integer.parseInt(values[1]);
+					break;
+				case "runway":
+					// runway <identifier> <x> <y> <length> [hdg], where the heading defaults to
+					// the one in the identifier
+					AirportDefinition.expect(values, 5, 6, where);
+					int hdg = (values.length > 5) ?
+						Integer.parseInt(values[5]) : AircraftMath.runwayHdg(values[1]);
+					runways.add(new Fix(values[1], hdg,
+										Double.parseDouble(values[2]),
+										Double.parseDouble(values[3]),
+										Integer.parseInt(values[4])));
+					break;
+				case "airway":
+					// airway <identifier> <exitHdg> <x> <y>
+					AirportDefinition.expect(values, 5, 5, where);
+					airways.add(new Fix(values[1],
+										Integer.parseInt(values[2]),
+										Double.parseDouble(values[3]),
+										Double.parseDouble(values[4]),
+										0));
+					break;
+				default:
+					throw new IllegalArgumentException("unknown keyword " + values[0] + " at " +
+													   where);
+				}
+			}
+			catch (NumberFormatException e) {
+				throw new IllegalArgumentException("invalid number at " + where, e);
+			}
+		}
+
+		if (isGA == null)
+			throw new IllegalArgumentException("ga not given in " + path);
+		return new AirportDefinition(code, isGA, acPerMin, radarRange,
+									 vertSeparation, horizSeparation,
+									 runways.toArray(new Fix[0]), airways.toArray(new Fix[0]));
+	}
+
+
+	private static void expect(String[] values, int min, int max, String where) {
+		if (values.length < min || values.length > max)
+			throw new IllegalArgumentException(values[0] + " takes " + (min - 1) +
+											   ((max != min) ? " to " + (max - 1) : "") +
+											   " values, at " + where);
+	}
+
+
+	static void putString(ByteBuffer out, String str) {
+		byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+		out.putShort((short) bytes.length);
+		out.put(bytes);
+	}
+
+
+	static String getString(ByteBuffer in) {
+		// Lengths are read unsigned and checked, so damaged data can not ask for a huge array
+		int length = Short.toUnsignedInt(in.getShort());
+		if (length > in.remaining())
+			throw new IllegalArgumentException("string length " + length + " out of bounds");
+		byte[] bytes = new byte[length];
+		in.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+
+	private static void putFixes(ByteBuffer out, Fix[] fixes) {
+		out.putShort((short) fixes.length);
+		for (Fix fix : fixes) {
+			AirportDefinition.putString(out, fix.identifier);
+			out.putShort((short) fix.hdg);
+			out.putDouble(fix.x);
+			out.putDouble(fix.y);
+			out.putInt(fix.length);
+		}
+	}
+
+
+	private static Fix[] getFixes(ByteBuffer in) {
+		// Every fix takes at least 24 bytes, which bounds how many there can be
+		int count = Short.toUnsignedInt(in.getShort());
+		if (count * 24L > in.remaining())
+			throw new IllegalArgumentException("fix count " + count + " out of bounds");
+		Fix[] fixes = new Fix[count];
+		for (int i = 0; i < fixes.length; i++) {
+			String identifier = AirportDefinition.getString(in);
+			fixes[i] = new Fix(identifier, in.getShort(), in.getDouble(), in.getDouble(),
+							   in.getInt());
+		}
+		return fixes;
+	}
+
+
+	public byte[] encode() {
+		// A character takes at most 4 bytes in UTF-8, so this is enough without measuring strings
+		int size = 2 + 4 * this.code.length() + 1 + 8 + 4 * 3 + 2 * 2;
+		for (Fix fix : this.runways)
+			size += 2 + 4 * fix.identifier.length() + 2 + 8 * 2 + 4;
+		for (Fix fix : this.airways)
+			size += 2 + 4 * fix.identifier.length() + 2 + 8 * 2 + 4;
+
+		ByteBuffer out = ByteBuffer.allocate(size);
+		AirportDefinition.putString(out, this.code);
+		out.put((byte) (this.isGA ? 1 : 0));
+		out.putDouble(this.acPerMin);
+		out.putInt(this.radarRange);
+		out.putInt(this.vertSeparation);
+		out.putInt(this.horizSeparation);
+		AirportDefinition.putFixes(out, this.runways);
+		AirportDefinition.putFixes(out, this.airways);
+
+		byte[] bytes = new byte[out.position()];
+		out.flip();
+		out.get(bytes);
+		return bytes;
+	}
+
+
+	public static AirportDefinition decode(ByteBuffer in) {
+		String code = AirportDefinition.getString(in);
+		boolean isGA = in.get() != 0;
+		double acPerMin = in.getDouble();
+		int radarRange = in.getInt();
+		int vertSeparation = in.getInt();
+		int horizSeparation = in.getInt();
+		Fix[] runways = AirportDefinition.getFixes(in);
+		Fix[] airways = AirportDefinition.getFixes(in);
+		return new AirportDefinition(code, isGA, acPerMin, radarRange,
+									 vertSeparation, horizSeparation, runways, airways);
+	}
+
+
+	@Override
+	public String toString() {
+		return this.code;
+	}
+
+
+
+	public static class Fix {
+
+		public String identifier;
+		public int hdg; // In deg, the runway heading or airway exit heading
+		public double x; // In nm
+		public double y; // In nm
+		public int length; // In ft, 0 for airways
+
+
+		public Fix(String identifier, int hdg, double x, double y, int length) {
+			if (identifier == null)
+				throw new NullPointerException("identifier cannot be null");
+			this.identifier = identifier;
+			this.hdg = hdg;
+			this.x = x;
+			this.y = y;
+			this.length = length;
+		}
+
+	}
+
+}
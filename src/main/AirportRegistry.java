@@ -0,0 +1,267 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystemNotFoundException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.CodeSource;
+import java.util.Arrays;
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.HashMap;
+import java.util.TreeMap;
+
+
+public class AirportRegistry {
+
+	public static final String DIRECTORY_NAME = "airports";
+	public static final Path DEFAULT_DIRECTORY = AirportRegistry.findDirectory();
+	public static final String CACHE_NAME = ".cache";
+
+	private static final int MAGIC = 0x41434131; // "ACA1"
+
+
+	private Path directory;
+
+	// Every definition pre-parsed into one buffer, and where each one starts in it, by code. The
+	// buffer is only decoded for the airports that are actually used
+	private ByteBuffer cache;
+	private Map<String, Integer> offsets;
+	private Map<String, AirportDefinition> definitions;
+
+
+	public AirportRegistry() {
+		this(AirportRegistry.DEFAULT_DIRECTORY);
+	}
+
+
+	public AirportRegistry(Path directory) {
+		if (directory == null)
+			throw new NullPointerException("directory cannot be null");
+		this.directory = directory;
+		this.definitions = new HashMap<>();
+	}
+
+
+	private static Path findDirectory() {
+		// Look beside the classes or jar the game was loaded from, and up to two directories
+		// above, so the airports are found wherever the game is started from. The working
+		// directory is the fallback, for when the code was not loaded from a file
+		try {
+			CodeSource source = AirportRegistry.class.getProtectionDomain().getCodeSource();
+			if (source != null && source.getLocation() != null) {
+				Path dir = Paths.get(source.getLocation().toURI());
+				for (int i = 0; i < 3 && dir != null; i++, dir = dir.getParent()) {
+					Path candidate = dir.resolve(AirportRegistry.DIRECTORY_NAME);
+					if (Files.isDirectory(candidate))
+						return candidate;
+				}
+			}
+		}
+		catch (URISyntaxException | FileSystemNotFoundException | IllegalArgumentException |
+			   SecurityException e)
+		{
+			// Not a location on the default file system
+		}
+		return Paths.get(AirportRegistry.DIRECTORY_NAME);
+	}
+
+
+	public Path getDirectory() {
+		return this.directory;
+	}
+
+
+	public synchronized List<String> getCodes() {
+		this.index();
+		return new ArrayList<>(this.offsets.keySet());
+	}
+
+
+	public synchronized AirportDefinition get(String code) {
+		if (code == null)
+			throw new NullPointerException("code cannot be null");
+
+		AirportDefinition definition = this.definitions.get(code);
+		if (definition != null)
+			return definition;
+
+		this.index();
+		Integer offset = this.offsets.get(code);
+		if (offset == null)
+			throw new IllegalArgumentException("no airport definition for code " + code + " in " +
+											   this.directory);
+		try {
+			ByteBuffer in = this.cache.duplicate();
+			in.position(offset);
+			definition = AirportDefinition.decode(in);
+		}
+		catch (RuntimeException e) {
+			// A cache that is damaged past its header is rebuilt, which parses every file again
+			this.buildCache(this.list());
+			definition = this.definitions.get(code);
+			if (definition == null)
+				throw new IllegalArgumentException("no airport definition for code " + code +
+												   " in " + this.directory);
+		}
+		this.definitions.put(code, definition);
+		return definition;
+	}
+
+
+	private List<Stamp> list() {
+		// Sorted so the listing compares with the cache in order, whatever order the directory
+		// is read in
+		if (!Files.isDirectory(this.directory))
+			throw new IllegalStateException("airport directory " +
+											this.directory.toAbsolutePath() + " does not exist");
+		Map<String, Stamp> stamps = new TreeMap<>();
+		try (DirectoryStream<Path> files =
+			 Files.newDirectoryStream(this.directory, "*" + AirportDefinition.EXTENSION))
+		{
+			for (Path file : files) {
+				String name = file.getFileName().toString();
+				stamps.put(name, new Stamp(name, Files.size(file),
+										   Files.getLastModifiedTime(file).toMillis()));
+			}
+		}
+		catch (IOException e) {
+			throw new UncheckedIOException("cannot list airport definitions in " + this.directory,
+										   e);
+		}
+		return new ArrayList<>(stamps.values());
+	}
+
+
+	private void index() {
+		if (this.offsets != null)
+			return;
+
+		// Use the cache if it was built from exactly the files that are there now, otherwise parse
+		// every file again
+		List<Stamp> stamps = this.list();
+		if (stamps.isEmpty())
+			throw new IllegalStateException("no airport definitions (*" +
+											AirportDefinition.EXTENSION + ") in " +
+											this.directory.toAbsolutePath());
+		if (!this.readCache(stamps))
+			this.buildCache(stamps);
+	}
+
+
+	private boolean readCache(List<Stamp> stamps) {
+		Path path = this.directory.resolve(AirportRegistry.CACHE_NAME);
+		if (!Files.isRegularFile(path))
+			return false;
+
+		try {
+			ByteBuffer in = ByteBuffer.wrap(Files.readAllBytes(path));
+			if (in.getInt() != AirportRegistry.MAGIC || in.getInt() != stamps.size())
+				return false;
+
+			// The header lists the file each definition came from, and its code and offset
+			Map<String, Integer> offsets = new TreeMap<>();
+			for (Stamp stamp : stamps) {
+				String name = AirportDefinition.getString(in);
+				long size = in.getLong();
+				long modified = in.getLong();
+				if (!name.equals(stamp.name) || size != stamp.size || modified != stamp.modified)
+					return false;
+				offsets.put(AirportDefinition.getString(in), in.getInt());
+			}
+
+			ByteBuffer cache = in.slice();
+			for (int offset : offsets.values()) {
+				if (offset < 0 || offset >= cache.limit())
+					return false;
+			}
+			this.cache = cache;
+			this.offsets = offsets;
+			return true;
+		}
+		catch (IOException | RuntimeException e) {
+			// A cache that can not be read, or that is damaged, is rebuilt. Damage can show up
+			// as any kind of bad length or value, not only as running out of bytes
+			return false;
+		}
+	}
+
+
+	private void buildCache(List<Stamp> stamps) {
+		List<AirportDefinition> parsed = new ArrayList<>();
+		List<byte[]> encoded = new ArrayList<>();
+		int size = 4 + 4;
+		for (Stamp stamp : stamps) {
+			AirportDefinition definition =
+				AirportDefinition.parse(this.directory.resolve(stamp.name));
+			byte[] bytes = definition.encode();
+			parsed.add(definition);
+			encoded.add(bytes);
+			size += (2 + 4 * stamp.name.length()) + 8 + 8 +
+					(2 + 4 * definition.getCode().length()) + 4 + bytes.length;
+		}
+
+		// Offsets are from the start of the definitions, which follow the header
+		ByteBuffer out = ByteBuffer.allocate(size);
+		Map<String, Integer> offsets = new TreeMap<>();
+		out.putInt(AirportRegistry.MAGIC);
+		out.putInt(stamps.size());
+		int offset = 0;
+		for (int i = 0; i < stamps.size(); i++) {
+			Stamp stamp = stamps.get(i);
+			String code = parsed.get(i).getCode();
+			AirportDefinition.putString(out, stamp.name);
+			out.putLong(stamp.size);
+			out.putLong(stamp.modified);
+			AirportDefinition.putString(out, code);
+			out.putInt(offset);
+			offsets.put(code, offset);
+			this.definitions.put(code, parsed.get(i));
+			offset += encoded.get(i).length;
+		}
+		int dataAt = out.position();
+		for (byte[] bytes : encoded)
+			out.put(bytes);
+		out.flip();
+
+		// Replace the cache in one move, so a reader never sees half of it. The cache only makes
+		// loading faster, so the definitions are still used if it can not be written
+		Path path = this.directory.resolve(AirportRegistry.CACHE_NAME);
+		try {
+			Path temp = Files.createTempFile(this.directory, AirportRegistry.CACHE_NAME, ".tmp");
+			Files.write(temp, Arrays.copyOf(out.array(), out.limit()));
+			Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING,
+					   StandardCopyOption.ATOMIC_MOVE);
+		}
+		catch (IOException e) {
+			System.err.println("cannot write airport cache " + path + ": " + e.getMessage());
+		}
+
+		out.position(dataAt);
+		this.cache = out.slice();
+		this.offsets = offsets;
+	}
+
+
+
+	private static class Stamp {
+
+		public String name;
+		public long size; // In bytes
+		public long modified; // In ms since the epoch
+
+
+		public Stamp(String name, long size, long modified) {
+			this.name = name;
+			this.size = size;
+			this.modified = modified;
+		}
+
+	}
+
+}
@@ -1,28 +1,19 @@
-import java.awt.Graphics;
-import java.awt.Font;
+import java.util.SplittableRandom;
 
 
 public class Airway extends Waypoint {	
 
-	public Airway(String identifier, int exitHdg, double x, double y) {
-		super(identifier, exitHdg, x, y);
+	public Airway(String identifier, int exitHdg, double x, double y, SplittableRandom random) {
+		super(identifier, exitHdg, x, y, Airway.altFromMax(random));
 	}
 
 
-	@Override
-	public void paintComponent(Graphics g) {
-		int pxX = (int) (super.getX() * Airport.pxPerMile());
-		int pxY = (int) (super.getY() * Airport.pxPerMile());
-		int pxSize = Airport.pxPerMile();
-		
-		g.setColor(Screen.RADAR_COLOR);
-	    g.setFont(new Font("Courier New", Font.PLAIN, pxSize));
-
-		int[] triangleX = new int[] {pxX - (pxSize / 2), pxX, pxX + (pxSize / 2)};
-		int[] triangleY = new int[] {pxY + (pxSize / 2), pxY - (pxSize) / 2, pxY + (pxSize / 2)};
-
-		g.drawPolygon(triangleX, triangleY, 3);
-		g.drawString(super.getIdentifier(), pxX + (pxSize / 2), pxY);
+	private static int altFromMax(SplittableRandom random) {
+		int maxAlt = 3000;
+		int minAlt = 0;
+		int alt = (int) (random.nextDouble() * (maxAlt - minAlt + 1)) + minAlt;
+		// Allow clearance when altitude is == max - alt for exiting
+		return AircraftMath.round(alt, Aircraft.ALT_INTERVAL);
 	}
 
 }
@@ -0,0 +1,202 @@
+import java.util.List;
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+
+public class Batch {
+
+	private ForkJoinPool pool;
+	private int tickRate;
+
+
+	public Batch(int parallelism, int tickRate) {
+		if (parallelism <= 0)
+			throw new IllegalArgumentException("parallelism " + parallelism + " out of bounds");
+		if (tickRate <= 0)
+			throw new IllegalArgumentException("tickRate " + tickRate + " out of bounds");
+
+		this.pool = new ForkJoinPool(parallelism);
+		this.tickRate = tickRate;
+	}
+
+
+	public int getParallelism() {
+		return this.pool.getParallelism();
+	}
+
+
+	public Result run(Scenario scenario) {
+		// Every scenario has its own airport and engine, and nothing in the model is shared
+		// between them, so scenarios need no synchronization with each other
+		Airport airport = new Airport(scenario.definition, scenario.seed);
+		SimulationEngine engine = new SimulationEngine(airport, this.tickRate);
+		long ticks = (long) scenario.minutes * 60 * this.tickRate;
+
+		double firstConflict = -1;
+		long startNanos = System.nanoTime();
+		for (long i = 0; i < ticks; i++) {
+			engine.tick();
+			if (firstConflict < 0 && airport.hasConflict())
+				firstConflict = (double) (i + 1) / this.tickRate;
+		}
+		long endNanos = System.nanoTime();
+
+		return new Result(scenario, ticks, airport.getFlights(), firstConflict,
+						  endNanos - startNanos);
+	}
+
+
+	public List<Result> run(List<Scenario> scenarios) {
+		if (scenarios == null)
+			throw new NullPointerException("scenarios cannot be null");
+
+		Result[] results = new Result[scenarios.size()];
+		this.pool.invoke(new Task(scenarios, results, 0, results.length));
+		List<Result> list = new ArrayList<>();
+		for (Result result : results)
+			list.add(result);
+		return list;
+	}
+
+
+	public void shutdown() {
+		this.pool.shutdown();
+	}
+
+
+	public static void main(String[] args) {
+		if (args.length < 2) {
+			System.err.println("usage: java Batch <minutes> <seeds> [code...]");
+			System.exit(1);
+		}
+
+		int minutes = Integer.parseInt(args[0]);
+		int seeds = Integer.parseInt(args[1]);
+		if (minutes <= 0)
+			throw new IllegalArgumentException("minutes " + minutes + " out of bounds");
+		if (seeds <= 0)
+			throw new IllegalArgumentException("seeds " + seeds + " out of bounds");
+
+		// Run every airport, or the ones given, once with each seed from 0 up to seeds
+		AirportRegistry registry = new AirportRegistry();
+		List<String> codes = new ArrayList<>();
+		for (int i = 2; i < args.length; i++)
+			codes.add(args[i].toUpperCase());
+		if (codes.isEmpty())
+			codes = registry.getCodes();
+		List<Scenario> scenarios = new ArrayList<>();
+		for (String code : codes) {
+			AirportDefinition definition = registry.get(code);
+			for (long seed = 0; seed < seeds; seed++)
+				scenarios.add(new Scenario(definition, seed, minutes));
+		}
+
+		Batch batch = new Batch(Runtime.getRuntime().availableProcessors(),
+								SimulationEngine.TICK_RATE);
+		long startNanos = System.nanoTime();
+		List<Result> results = batch.run(scenarios);
+		long endNanos = System.nanoTime();
+		batch.shutdown();
+
+		long ticks = 0;
+		for (Result result : results) {
+			System.out.println(result);
+			ticks += result.ticks;
+		}
+		double seconds = (endNanos - startNanos) / 1e9;
+		System.out.println("scenarios: " + results.size() + " on " + batch.getParallelism() +
+						   " threads");
+		System.out.println("elapsed:   " + String.format("%.3f", seconds) + " s");
+		System.out.println("ticks/sec: " + String.format("%.0f", ticks / seconds));
+	}
+
+
+
+	public static class Scenario {
+
+		public AirportDefinition definition;
+		public long seed;
+		public int minutes; // In min (simulated)
+
+
+		public Scenario(AirportDefinition definition, long seed, int minutes) {
+			if (definition == null)
+				throw new NullPointerException("definition cannot be null");
+			if (minutes <= 0)
+				throw new IllegalArgumentException("minutes " + minutes + " out of bounds");
+
+			this.definition = definition;
+			this.seed = seed;
+			this.minutes = minutes;
+		}
+
+	}
+
+
+
+	public static class Result {
+
+		public Scenario scenario;
+		public long ticks;
+		public int flights;
+		public double firstConflict; // In sec (simulated), or -1 for no conflict
+		public long nanos; // In ns (real)
+
+
+		public Result(Scenario scenario, long ticks, int flights, double firstConflict,
+					  long nanos)
+		{
+			this.scenario = scenario;
+			this.ticks = ticks;
+			this.flights = flights;
+			this.firstConflict = firstConflict;
+			this.nanos = nanos;
+		}
+
+
+		@Override
+		public String toString() {
+			String conflict = (this.firstConflict < 0) ?
+				"none" : String.format("%.1f s", this.firstConflict);
+			return this.scenario.definition.getCode() + " seed " + this.scenario.seed +
+				": flights " + this.flights + ", first conflict " + conflict + ", " +
+				String.format("%.0f", this.ticks / (this.nanos / 1e9)) + " ticks/sec";
+		}
+
+	}
+
+
+
+	private class Task extends RecursiveAction {
+
+		private List<Scenario> scenarios;
+		private Result[] results;
+		private int from;
+		private int to;
+
+
+		public Task(List<Scenario> scenarios, Result[] results, int from, int to) {
+			this.scenarios = scenarios;
+			this.results = results;
+			this.from = from;
+			this.to = to;
+		}
+
+
+		@Override
+		protected void compute() {
+			// Split in halves down to single scenarios, so idle workers can steal the other half
+			if (this.to - this.from <= 1) {
+				if (this.to > this.from)
+					this.results[this.from] = Batch.this.run(this.scenarios.get(this.from));
+				return;
+			}
+			int mid = (this.from + this.to) / 2;
+			RecursiveAction.invokeAll(new Task(this.scenarios, this.results, this.from, mid),
+									  new Task(this.scenarios, this.results, mid, this.to));
+		}
+
+	}
+
+}
@@ -0,0 +1,299 @@
+import java.util.List;
+import java.util.ArrayList;
+
+
+public class ConflictProbe {
+
+	public static final double DEFAULT_HORIZON = 120; // In sec
+	public static final double DEFAULT_STEP = 1; // In sec
+	public static final double DEFAULT_INTERVAL = 0; // In sec, 0 probes on every tick
+
+	// Climb and turn rates used for projection. The climb rate is the middle of the 15-18 fps
+	// range used by AircraftTable::update, and the maximum is used to bound swept volumes
+	private static final double CLIMB_RATE = 16.5; // In fps
+	private static final double MAX_CLIMB_RATE = 18; // In fps
+	private static final double TURN_RATE = 3; // In deg / sec
+
+
+	private double horizSeparation; // In nm
+	private double vertSeparation; // In ft
+	private double horizon; // In sec
+	private double step; // In sec
+	private double interval; // In sec
+	private double elapsed; // In sec
+
+	// Projected positions, flattened as [row * samples + sample]
+	private int samples;
+	private double[] px; // In nm
+	private double[] py; // In nm
+	private double[] palt; // In ft
+
+	// Swept volume of each projected track, padded by half the separation minima
+	private double[] minX;
+	private double[] maxX;
+	private double[] minY;
+	private double[] maxY;
+	private double[] minAlt;
+	private double[] maxAlt;
+
+	// Coarse index of starting positions, sized so that tracks in non-neighboring cells can
+	// not come within separation of each other before the horizon
+	private SeparationGrid grid;
+	private List<Prediction> predictions;
+
+
+	public ConflictProbe(double horizSeparation, double vertSeparation) {
+		if (horizSeparation <= 0)
+			throw new IllegalArgumentException("horizSeparation " + horizSeparation +
+											   " out of bounds");
+		if (vertSeparation <= 0)
+			throw new IllegalArgumentException("vertSeparation " + vertSeparation +
+											   " out of bounds");
+
+		this.horizSeparation = horizSeparation;
+		this.vertSeparation = vertSeparation;
+		this.horizon = ConflictProbe.DEFAULT_HORIZON;
+		this.step = ConflictProbe.DEFAULT_STEP;
+		this.interval = ConflictProbe.DEFAULT_INTERVAL;
+		this.elapsed = Double.MAX_VALUE;
+		this.predictions = new ArrayList<>();
+		this.allocate(16);
+	}
+
+
+	private void allocate(int capacity) {
+		this.samples = (int) Math.ceil(this.horizon / this.step) + 1;
+		this.px = new double[capacity * this.samples];
+		this.py = new double[capacity * this.samples];
+		this.palt = new double[capacity * this.samples];
+		this.minX = new double[capacity];
+		this.maxX = new double[capacity];
+		this.minY = new double[capacity];
+		this.maxY = new double[capacity];
+		this.minAlt = new double[capacity];
+		this.maxAlt = new double[capacity];
+	}
+
+
+	public double getHorizon() {
+		return this.horizon;
+	}
+
+
+	public void setHorizon(double horizon) {
+		if (horizon <= 0)
+			throw new IllegalArgumentException("horizon " + horizon + " out of bounds");
+		this.horizon = horizon;
+		this.allocate(this.minX.length);
+		this.grid = null;
+	}
+
+
+	public double getStep() {
+		return this.step;
+	}
+
+
+	public void setStep(double step) {
+		if (step <= 0)
+			throw new IllegalArgumentException("step " + step + " out of bounds");
+		this.step = step;
+		this.allocate(this.minX.length);
+	}
+
+
+	public double getInterval() {
+		return this.interval;
+	}
+
+
+	public void setInterval(double interval) {
+		if (interval < 0)
+			throw new IllegalArgumentException("interval " + interval + " out of bounds");
+		this.interval = interval;
+	}
+
+
+	public List<Prediction> getPredictions() {
+		return this.predictions;
+	}
+
+
+	private void project(AircraftTable table, int row) {
+		double x = table.getX(row);
+		double y = table.getY(row);
+		double currentAlt = table.getCurrentAlt(row);
+		double currentSpd = table.getCurrentSpd(row);
+		double currentHdg = table.getCurrentHdg(row);
+		double targetAlt = table.getTargetAlt(row);
+		double targetSpd = table.getTargetSpd(row);
+		double targetHdg = table.getTargetHdg(row);
+		boolean cleared = table.isCleared(row);
+		boolean handedOff = table.isHandedOff(row);
+		Waypoint target = table.getTarget(row);
+		double headX = handedOff ? target.getX() : target.getTargetX();
+		double headY = handedOff ? target.getY() : target.getTargetY();
+
+		int base = row * this.samples;
+		this.px[base] = x;
+		this.py[base] = y;
+		this.palt[base] = currentAlt;
+
+		// Step forward with the same laws as AircraftTable::update
+		double t = this.step * (1.0 / 60.0) * (1.0 / 60.0); // In hr
+		for (int k = 1; k < this.samples; k++) {
+			x += currentSpd * FastMath.sinDeg(currentHdg) * t;
+			y -= currentSpd * FastMath.cosDeg(currentHdg) * t;
+
+			if (cleared)
+				targetHdg = FastMath.hdgToTarget(x, y, headX, headY);
+			currentSpd = AircraftMath.approachValue(currentSpd, targetSpd, this.step);
+			currentAlt = AircraftMath.approachValue(currentAlt, targetAlt,
+													ConflictProbe.CLIMB_RATE * this.step);
+			currentHdg = FastMath.approachHdg(currentHdg, targetHdg,
+											  ConflictProbe.TURN_RATE * this.step);
+
+			this.px[base + k] = x;
+			this.py[base + k] = y;
+			this.palt[base + k] = currentAlt;
+		}
+
+		// Record the swept volume of the projected path
+		double loX = Double.MAX_VALUE;
+		double hiX = -Double.MAX_VALUE;
+		double loY = Double.MAX_VALUE;
+		double hiY = -Double.MAX_VALUE;
+		double loAlt = Double.MAX_VALUE;
+		double hiAlt = -Double.MAX_VALUE;
+		for (int k = 0; k < this.samples; k++) {
+			loX = Math.min(loX, this.px[base + k]);
+			hiX = Math.max(hiX, this.px[base + k]);
+			loY = Math.min(loY, this.py[base + k]);
+			hiY = Math.max(hiY, this.py[base + k]);
+			loAlt = Math.min(loAlt, this.palt[base + k]);
+			hiAlt = Math.max(hiAlt, this.palt[base + k]);
+		}
+		this.minX[row] = loX - this.horizSeparation / 2;
+		this.maxX[row] = hiX + this.horizSeparation / 2;
+		this.minY[row] = loY - this.horizSeparation / 2;
+		this.maxY[row] = hiY + this.horizSeparation / 2;
+		this.minAlt[row] = loAlt - this.vertSeparation / 2;
+		this.maxAlt[row] = hiAlt + this.vertSeparation / 2;
+	}
+
+
+	private boolean overlaps(int i, int j) {
+		return this.minX[i] < this.maxX[j] && this.minX[j] < this.maxX[i] &&
+			   this.minY[i] < this.maxY[j] && this.minY[j] < this.maxY[i] &&
+			   this.minAlt[i] < this.maxAlt[j] && this.minAlt[j] < this.maxAlt[i];
+	}
+
+
+	private void compare(AircraftTable table, int i, int j) {
+		int baseI = i * this.samples;
+		int baseJ = j * this.samples;
+		double closestTime = -1;
+		double closestDist2 = Double.MAX_VALUE; // Squared, so no root is taken per sample
+
+		// Find the closest approach along each segment, treating motion between two samples as
+		// a straight line, at the times when the pair is within vertical separation
+		for (int k = 0; k < this.samples - 1; k++) {
+			double dx0 = this.px[baseI + k] - this.px[baseJ + k];
+			double dy0 = this.py[baseI + k] - this.py[baseJ + k];
+			double dx1 = this.px[baseI + k + 1] - this.px[baseJ + k + 1];
+			double dy1 = this.py[baseI + k + 1] - this.py[baseJ + k + 1];
+			double dvx = dx1 - dx0;
+			double dvy = dy1 - dy0;
+			double dv2 = dvx * dvx + dvy * dvy;
+			double f = (dv2 == 0) ? 0 : Math.max(0, Math.min(1, -(dx0 * dvx + dy0 * dvy) / dv2));
+
+			double dAlt0 = this.palt[baseI + k] - this.palt[baseJ + k];
+			double dAlt1 = this.palt[baseI + k + 1] - this.palt[baseJ + k + 1];
+			if (Math.abs(dAlt0 + (dAlt1 - dAlt0) * f) >= this.vertSeparation)
+				continue;
+
+			double dx = dx0 + dvx * f;
+			double dy = dy0 + dvy * f;
+			double dist2 = dx * dx + dy * dy;
+			if (dist2 < closestDist2) {
+				closestDist2 = dist2;
+				closestTime = (k + f) * this.step;
+			}
+		}
+
+		if (closestDist2 < this.horizSeparation * this.horizSeparation)
+			this.predictions.add(new Prediction(table.get(i), table.get(j),
+												closestTime, Math.sqrt(closestDist2)));
+	}
+
+
+	public List<Prediction> update(AircraftTable table, double seconds) {
+		// By default every call probes. A positive interval is an opt-in throttle that only
+		// re-probes once per interval of simulated time
+		this.elapsed += seconds;
+		if (this.elapsed >= this.interval) {
+			this.elapsed = 0;
+			this.probe(table);
+		}
+		return this.predictions;
+	}
+
+
+	public List<Prediction> probe(AircraftTable table) {
+		int size = table.size();
+		if (size > this.minX.length)
+			this.allocate(Math.max(size, this.minX.length * 2));
+		this.predictions.clear();
+
+		// Project every track and find how far any of them can travel before the horizon
+		double maxSpd = 0;
+		for (int row = 0; row < size; row++) {
+			this.project(table, row);
+			maxSpd = Math.max(maxSpd, Math.max(table.getCurrentSpd(row), table.getTargetSpd(row)));
+		}
+		double reach = maxSpd * (this.horizon / 3600.0); // In nm
+		double climbReach = ConflictProbe.MAX_CLIMB_RATE * this.horizon; // In ft
+		double cellSize = 2 * reach + this.horizSeparation;
+		double bandSize = 2 * climbReach + this.vertSeparation;
+
+		// Rebuild the index only when tracks can now reach further than a cell
+		if (this.grid == null || this.grid.getCellSize() < cellSize)
+			this.grid = new SeparationGrid(cellSize * 1.25, bandSize, size);
+		this.grid.clear();
+		for (int row = 0; row < size; row++)
+			this.grid.add(row, table.getX(row), table.getY(row), table.getCurrentAlt(row));
+
+		// Only pairs that start in neighboring cells and whose swept volumes overlap are compared
+		for (int i = 0; i < size; i++) {
+			int count = this.grid.collect(table.getX(i), table.getY(i), table.getCurrentAlt(i));
+			for (int k = 0; k < count; k++) {
+				int j = this.grid.found(k);
+				if (j <= i || !this.overlaps(i, j))
+					continue;
+				this.compare(table, i, j);
+			}
+		}
+
+		return this.predictions;
+	}
+
+
+
+	public static class Prediction {
+
+		public Aircraft aircraft1;
+		public Aircraft aircraft2;
+		public double time; // In sec from now
+		public double distance; // In nm
+
+
+		public Prediction(Aircraft aircraft1, Aircraft aircraft2, double time, double distance) {
+			this.aircraft1 = aircraft1;
+			this.aircraft2 = aircraft2;
+			this.time = time;
+			this.distance = distance;
+		}
+
+	}
+
+}
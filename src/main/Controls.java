@@ -1,17 +1,29 @@
 import javax.swing.JComponent;
 import java.awt.Graphics;
-import java.awt.Dimension;
-import java.awt.Point;
 import java.awt.Color;
 import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.image.BufferedImage;
 import java.awt.event.MouseListener;
 import java.awt.event.MouseEvent;
 
 
 public class Controls extends JComponent implements MouseListener {
 
-	// Aircraft information
+	private static final Color LIGHT_RADAR_COLOR = new Color(Screen.RADAR_COLOR.getRed(),
+															 Screen.RADAR_COLOR.getGreen(),
+															 Screen.RADAR_COLOR.getBlue(),
+															 100);
+	private static final Color BUTTON_COLOR = new Color(0, 0, 0, 100);
+	private static final Color DISABLED_COLOR = Screen.RADAR_COLOR.darker().darker();
+
+
+	// Aircraft information. Commands change the owner's row in the airport's table, so they are
+	// given while holding the airport lock, when no tick can be stepping the table
+	private Airport airport;
 	private Aircraft owner;
+	private Recorder recorder;
+	private Profiler profiler;
 	private int maxAlt; // In ft
 	private int minAlt; // In ft
 	private int maxSpd; // In kt
@@ -36,18 +48,91 @@ public class Controls extends JComponent implements MouseListener {
 	private int directToOffsetX;
 	private int directToOffsetY;
 
+	// Compass rose and ladders, with where each ladder entry was drawn
+	private BufferedImage base;
+	private int[] spdWidths;
+	private int[] spdYs;
+	private int[] altWidths;
+	private int[] altYs;
+
 
-	public Controls(Aircraft owner) {
+	public Controls() {
 		this.setFocusable(true);
 		this.addMouseListener(this);
-		
+
+		// One panel is reused for whichever aircraft is selected, see bind()
+		this.airport = null;
+		this.owner = null;
+		this.recorder = null;
+		this.profiler = null;
+		this.spdWidths = new int[0];
+		this.spdYs = new int[0];
+		this.altWidths = new int[0];
+		this.altYs = new int[0];
+		this.setVisible(false);
+	}
+
+
+	public Airport getAirport() {
+		return this.airport;
+	}
+
+
+	public void setAirport(Airport airport) {
+		this.airport = airport;
+	}
+
+
+	public Aircraft getOwner() {
+		return this.owner;
+	}
+
+
+	public Recorder getRecorder() {
+		return this.recorder;
+	}
+
+
+	public void setRecorder(Recorder recorder) {
+		this.recorder = recorder;
+	}
+
+
+	public Profiler getProfiler() {
+		return this.profiler;
+	}
+
+
+	public void setProfiler(Profiler profiler) {
+		this.profiler = profiler;
+	}
+
+
+	public synchronized void bind(Aircraft owner) {
+		if (owner == this.owner)
+			return;
+
 		this.owner = owner;
+		this.setVisible(owner != null);
+		if (owner == null)
+			return;
+
 		this.maxAlt = (int) AircraftMath.round(this.owner.getMaxAlt(), Aircraft.ALT_INTERVAL);
 		this.minAlt = this.owner.getMinAlt();
 		this.maxSpd = (int) AircraftMath.round(this.owner.getMaxSpd(), Aircraft.SPD_INTERVAL);
 		this.minSpd = this.owner.getMinSpd();
 		this.altCount = ((this.maxAlt - this.minAlt) / Aircraft.ALT_INTERVAL);
 		this.spdCount = ((this.maxSpd - this.minSpd) / Aircraft.SPD_INTERVAL);
+		if (this.spdWidths.length < this.spdCount + 1) {
+			this.spdWidths = new int[this.spdCount + 1];
+			this.spdYs = new int[this.spdCount + 1];
+		}
+		if (this.altWidths.length < this.altCount + 1) {
+			this.altWidths = new int[this.altCount + 1];
+			this.altYs = new int[this.altCount + 1];
+		}
+
+		// The ladders and the button label depend on the aircraft, so lay out and draw again
 		this.calculateConstants();
 	}
 
@@ -55,7 +140,13 @@ public class Controls extends JComponent implements MouseListener {
 	private void calculateConstants() {
 		this.w = super.getBounds().width;
 		this.h = super.getBounds().height;
+		if (this.owner == null)
+			return;
+
 		this.font = new Font("Courier New", Font.PLAIN, Math.min(this.w, this.h) / 20);
+		FontMetrics metrics = this.getFontMetrics(this.font);
+		this.strHeight = metrics.getHeight();
+		this.directToWidth = metrics.stringWidth("Cleared " + this.owner.getTarget());
 		this.compassSize = Math.min(this.h / 2, w);
 		this.margin = this.compassSize / 10;
 		this.compassSize -= this.margin * 2;
@@ -66,21 +157,19 @@ public class Controls extends JComponent implements MouseListener {
 		this.directToOffsetX =
 			this.compassOffsetX + (this.compassSize / 2) - (this.directToWidth / 2);
 		this.directToOffsetY = this.compassOffsetY + (this.compassSize / 4);
+
+		// Everything that depends on the size is drawn again on the next paint
+		this.base = null;
 	}
-	
 
-	@Override
-	public void paintComponent(Graphics g) {
-		super.paintComponent(g);
+
+	private BufferedImage renderBase() {
+		BufferedImage image = new BufferedImage(this.w, this.h, BufferedImage.TYPE_INT_ARGB);
+		Graphics g = image.createGraphics();
 		g.setFont(this.font);
-		this.strHeight = g.getFontMetrics().getHeight();
-		
-		Color radarColor = Screen.RADAR_COLOR;
-		Color lightRadarColor =
-			new Color(radarColor.getRed(), radarColor.getGreen(), radarColor.getBlue(), 100);
-		g.setColor(radarColor);
+		FontMetrics metrics = g.getFontMetrics();
+		g.setColor(Screen.RADAR_COLOR);
 
-		
 		// Draw compass
 		int compassRadius = this.compassSize / 2;
 		for (int hdg = 0; hdg < 360; hdg += Aircraft.HDG_INTERVAL) {
@@ -103,99 +192,140 @@ public class Controls extends JComponent implements MouseListener {
 			// Only draw every third heading number, otherwise draw a dot
 			if (hdg % (Aircraft.HDG_INTERVAL * 3) == 0)
 				g.drawString(str,
-							 x - (g.getFontMetrics().stringWidth(str) / 2),
+							 x - (metrics.stringWidth(str) / 2),
 							 y + this.strHeight / 3);
 			else
 				g.drawOval(x, y, this.compassSize / 70, this.compassSize / 70);
 		}
 
-		// Draw compass arrow
-		double rad = AircraftMath.hdgToRad(this.owner.getTargetHdg());
-		Point arrowOrigin = new Point(this.compassOffsetX + compassRadius,
-									  this.compassOffsetY + compassRadius);
-		Point arrowTerminal = new Point((int) (compassRadius * Math.cos(rad)),
-										(int) (compassRadius * Math.sin(rad)));
-		g.drawLine(arrowOrigin.x, arrowOrigin.y,
-				   arrowOrigin.x + arrowTerminal.x,
-				   arrowOrigin.y - arrowTerminal.y);
-
-		// Draw "direct to" button
-		String directToStr = "Cleared " + this.owner.getTarget();
-		this.directToWidth = g.getFontMetrics().stringWidth(directToStr);
-		g.setColor(this.owner.isCleared() ? lightRadarColor : new Color(0, 0, 0, 100));
-		g.fillRect(this.directToOffsetX, this.directToOffsetY, this.directToWidth, this.strHeight);
-		g.setColor(radarColor);
-		g.drawRect(this.directToOffsetX, this.directToOffsetY, this.directToWidth, this.strHeight);
-		if (!this.owner.canBeCleared())
-			g.setColor(radarColor.darker().darker());
-		g.drawString(directToStr,
-					 this.directToOffsetX,
-					 this.directToOffsetY + (int) (this.strHeight * 0.8));
-		
-
-		// Draw airspeed and altitude spinners
-		g.setColor(radarColor);
-		
-		int totalSpdHeight = this.strHeight * this.spdCount;
-		int totalAltHeight = this.strHeight * this.altCount;
-
+		// Draw airspeed ladder, remembering where each entry is for the selection box
 		int spdY = this.textOffsetY;
 		int spdMargin = this.textHeight / this.spdCount;
 		this.spdTextWidth = 0;
-		for (int spd = maxSpd; spd >= minSpd; spd -= Aircraft.SPD_INTERVAL) {
-			String str = Integer.toString(spd);
+		for (int i = 0; i <= this.spdCount; i++) {
+			String str = Integer.toString(this.maxSpd - i * Aircraft.SPD_INTERVAL);
 			// Text width update for click detection
-			int textWidth = g.getFontMetrics().stringWidth(str);
+			int textWidth = metrics.stringWidth(str);
 			if (textWidth > this.spdTextWidth)
 				this.spdTextWidth = textWidth;
 
-			// Draw string and box if needed
 			g.drawString(str, this.margin, spdY);
-			if (spd == (int) this.owner.getTargetSpd())
-				g.drawRect(this.margin, spdY - (int) (this.strHeight * 0.8),
-						   textWidth, this.strHeight);
+			this.spdWidths[i] = textWidth;
+			this.spdYs[i] = spdY;
 			spdY += spdMargin;
 		}
 
+		// Draw altitude ladder
 		int altY = this.textOffsetY;
 		int altMargin = this.textHeight / this.altCount;
 		this.altTextWidth = 0;
-		for (int alt = maxAlt; alt >= minAlt; alt -= Aircraft.ALT_INTERVAL) {
+		for (int i = 0; i <= this.altCount; i++) {
+			int alt = this.maxAlt - i * Aircraft.ALT_INTERVAL;
 			String str = Integer.toString(alt);
 			// Text width update for click detection
-			int textWidth = g.getFontMetrics().stringWidth(str);
+			int textWidth = metrics.stringWidth(str);
 			if (textWidth > this.altTextWidth)
 				this.altTextWidth = textWidth;
 
 			// Draw background highlight if this is the altitude needed for approach clearance
 			if (this.owner.getTarget().atAlt(alt, this.owner.getMaxAlt())) {
-				g.setColor(lightRadarColor);
+				g.setColor(Controls.LIGHT_RADAR_COLOR);
 				g.fillRect(this.w - this.margin - textWidth,
 						   altY - (int) (this.strHeight * 0.8),
 						   textWidth, this.strHeight);
 			}
 
-			// Draw string and box if needed
-			g.setColor(radarColor);
+			g.setColor(Screen.RADAR_COLOR);
 			g.drawString(str, this.w - this.margin - textWidth, altY);
-			if (alt == (int) this.owner.getTargetAlt())
-				g.drawRect(this.w - this.margin - textWidth,
-						   altY - (int) (this.strHeight * 0.8),
-						   textWidth, this.strHeight);
+			this.altWidths[i] = textWidth;
+			this.altYs[i] = altY;
 			altY += altMargin;
 		}
+
+		g.dispose();
+		return image;
 	}
 
 
 	@Override
-	public void setBounds(int x, int y, int w, int h) {
+	public synchronized void paintComponent(Graphics g) {
+		super.paintComponent(g);
+		if (this.owner == null || this.w <= 0 || this.h <= 0 ||
+			this.spdCount <= 0 || this.altCount <= 0)
+		{
+			return;
+		}
+		long startNanos = System.nanoTime();
+
+		// The compass rose and the ladders only change with the size, so they are drawn once
+		// and only the parts that follow the aircraft are drawn over them each frame
+		if (this.base == null)
+			this.base = this.renderBase();
+		g.drawImage(this.base, 0, 0, null);
+		g.setFont(this.font);
+		g.setColor(Screen.RADAR_COLOR);
+
+		// Draw compass arrow
+		int compassRadius = this.compassSize / 2;
+		double rad = AircraftMath.hdgToRad(this.owner.getTargetHdg());
+		int arrowOriginX = this.compassOffsetX + compassRadius;
+		int arrowOriginY = this.compassOffsetY + compassRadius;
+		g.drawLine(arrowOriginX, arrowOriginY,
+				   arrowOriginX + (int) (compassRadius * Math.cos(rad)),
+				   arrowOriginY - (int) (compassRadius * Math.sin(rad)));
+
+		// Draw "direct to" button
+		g.setColor(this.owner.isCleared() ? Controls.LIGHT_RADAR_COLOR : Controls.BUTTON_COLOR);
+		g.fillRect(this.directToOffsetX, this.directToOffsetY, this.directToWidth, this.strHeight);
+		g.setColor(Screen.RADAR_COLOR);
+		g.drawRect(this.directToOffsetX, this.directToOffsetY, this.directToWidth, this.strHeight);
+		if (!this.owner.canBeCleared())
+			g.setColor(Controls.DISABLED_COLOR);
+		g.drawString("Cleared " + this.owner.getTarget(),
+					 this.directToOffsetX,
+					 this.directToOffsetY + (int) (this.strHeight * 0.8));
+
+		// Draw boxes around the selected speed and altitude
+		g.setColor(Screen.RADAR_COLOR);
+		int targetSpd = (int) this.owner.getTargetSpd();
+		for (int i = 0; i <= this.spdCount; i++) {
+			if (this.maxSpd - i * Aircraft.SPD_INTERVAL == targetSpd)
+				g.drawRect(this.margin, this.spdYs[i] - (int) (this.strHeight * 0.8),
+						   this.spdWidths[i], this.strHeight);
+		}
+		int targetAlt = (int) this.owner.getTargetAlt();
+		for (int i = 0; i <= this.altCount; i++) {
+			if (this.maxAlt - i * Aircraft.ALT_INTERVAL == targetAlt)
+				g.drawRect(this.w - this.margin - this.altWidths[i],
+						   this.altYs[i] - (int) (this.strHeight * 0.8),
+						   this.altWidths[i], this.strHeight);
+		}
+
+		if (this.profiler != null)
+			this.profiler.record(Profiler.Stage.CONTROLS, startNanos);
+	}
+
+
+	@Override
+	public synchronized void setBounds(int x, int y, int w, int h) {
+		// Screen sets the bounds on every frame, so only recalculate when the size changes
+		boolean resized = w != this.w || h != this.h;
 		super.setBounds(x, y, w, h);
-		this.calculateConstants();
+		if (resized)
+			this.calculateConstants();
+	}
+
+
+	private void record(byte command, double value) {
+		if (this.recorder != null)
+			this.recorder.command(this.owner, command, value);
 	}
 
 
 	@Override
-	public void mousePressed(MouseEvent e) {
+	public synchronized void mousePressed(MouseEvent e) {
+		if (this.owner == null || this.airport == null)
+			return;
 		int clickX = e.getX();
 		int clickY = e.getY();
 
@@ -204,7 +334,10 @@ public class Controls extends JComponent implements MouseListener {
 		if (clickX >= this.directToOffsetX && clickX <= this.directToOffsetX + this.directToWidth &&
 			clickY >= this.directToOffsetY && clickY <= this.directToOffsetY + this.strHeight)
 		{
-			this.owner.toggleClearance();
+			synchronized (this.airport) {
+				this.owner.toggleClearance();
+				this.record(Recorder.CLEARANCE, this.owner.isCleared() ? 1 : 0);
+			}
 			return;
 		}
 
@@ -213,8 +346,6 @@ public class Controls extends JComponent implements MouseListener {
 		if (clickX > this.compassOffsetX && clickX < this.compassOffsetX + this.compassSize &&
 			clickY > this.compassOffsetY && clickY < this.compassOffsetY + this.compassSize)
 		{
-			this.owner.cancelClearance();
-			
 			int compassCenterX = this.compassOffsetX + this.compassSize / 2;
 			int compassCenterY = this.compassOffsetY + this.compassSize / 2;
 			// Coordinate on the unit circle
@@ -227,7 +358,11 @@ public class Controls extends JComponent implements MouseListener {
 			else
 				rad = Math.PI - Math.asin(y / r);
 
-			this.owner.setTargetHdg(AircraftMath.radToHdg(rad));
+			synchronized (this.airport) {
+				this.owner.cancelClearance();
+				this.owner.setTargetHdg(AircraftMath.radToHdg(rad));
+				this.record(Recorder.HDG, this.owner.getTargetHdg());
+			}
 			return;
 		}
 
@@ -245,7 +380,10 @@ public class Controls extends JComponent implements MouseListener {
 			int boxClicked = spdClickY / spdTextMargin;
 			int distFromMax = (this.spdCount - boxClicked);
 			int spd = this.minSpd + (Aircraft.SPD_INTERVAL * distFromMax);
-			this.owner.setTargetSpd(spd);
+			synchronized (this.airport) {
+				this.owner.setTargetSpd(spd);
+				this.record(Recorder.SPD, this.owner.getTargetSpd());
+			}
 			return;
 		}
 
@@ -263,7 +401,10 @@ public class Controls extends JComponent implements MouseListener {
 			int boxClicked = altClickY / altTextMargin;
 			int distFromMax = (this.altCount - boxClicked);
 			int alt = this.minAlt + (Aircraft.ALT_INTERVAL * distFromMax);
-			this.owner.setTargetAlt(alt);
+			synchronized (this.airport) {
+				this.owner.setTargetAlt(alt);
+				this.record(Recorder.ALT, this.owner.getTargetAlt());
+			}
 			return;
 		}
 	}
@@ -0,0 +1,128 @@
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.font.FontRenderContext;
+import java.awt.font.GlyphVector;
+import java.util.Map;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+
+
+public class DataBlockCache {
+
+	public static final String FONT_NAME = "Courier New";
+
+
+	private Map<Integer, Font> fonts;
+	private Map<Aircraft, Label> labels;
+	private FontRenderContext frc;
+	private long frame;
+
+
+	public DataBlockCache() {
+		this.fonts = new HashMap<>();
+		this.labels = new IdentityHashMap<>();
+		this.frc = null;
+		this.frame = 0;
+	}
+
+
+	public Font getFont(int style, int size) {
+		// Styles only use the low bits, so the style and size pack into one key
+		int key = (size << 2) | style;
+		Font font = this.fonts.get(key);
+		if (font == null) {
+			font = new Font(DataBlockCache.FONT_NAME, style, size);
+			this.fonts.put(key, font);
+		}
+		return font;
+	}
+
+
+	public void beginFrame(Graphics2D g) {
+		// Glyphs are laid out for one render context, so a new one invalidates every label
+		FontRenderContext frc = g.getFontRenderContext();
+		if (!frc.equals(this.frc)) {
+			this.labels.clear();
+			this.frc = frc;
+		}
+		this.frame++;
+	}
+
+
+	public void endFrame() {
+		// Forget aircraft that were not drawn this frame, such as ones that have landed
+		Iterator<Label> it = this.labels.values().iterator();
+		while (it.hasNext()) {
+			if (it.next().frame != this.frame)
+				it.remove();
+		}
+	}
+
+
+	public Label peek(Aircraft aircraft) {
+		return this.labels.get(aircraft);
+	}
+
+
+	public Label get(Graphics2D g, Aircraft aircraft, boolean selected, int size) {
+		Label label = this.labels.get(aircraft);
+		if (label == null) {
+			label = new Label();
+			this.labels.put(aircraft, label);
+		}
+		label.frame = this.frame;
+
+		// Only lay the text out again when one of the displayed values has changed
+		int alt = AircraftMath.round(aircraft.getCurrentAlt(), 25);
+		int spd = (int) aircraft.getCurrentSpd();
+		int targetAlt = AircraftMath.round(aircraft.getTargetAlt(), 25);
+		if (label.lines != null && label.selected == selected && label.size == size &&
+			label.alt == alt && label.spd == spd && (!selected || label.targetAlt == targetAlt))
+			return label;
+
+		label.selected = selected;
+		label.size = size;
+		label.alt = alt;
+		label.spd = spd;
+		label.targetAlt = targetAlt;
+		String[] lines =
+			selected ?
+			new String[] {aircraft.getId() + " " + aircraft.getType(),
+						  aircraft.getTarget() + " " + targetAlt,
+						  alt + " " + spd} :
+			new String[] {aircraft.getId(),
+						  alt + " " + spd};
+
+		Font font = this.getFont(Font.PLAIN, size);
+		FontMetrics metrics = g.getFontMetrics(font);
+		label.lines = new GlyphVector[lines.length];
+		label.widths = new int[lines.length];
+		for (int i = 0; i < lines.length; i++) {
+			label.lines[i] = font.createGlyphVector(this.frc, lines[i]);
+			label.widths[i] = metrics.stringWidth(lines[i]);
+		}
+		label.height = metrics.getHeight();
+		return label;
+	}
+
+
+
+	public static class Label {
+
+		public GlyphVector[] lines;
+		public int[] widths; // In px
+		public int height; // In px, of each line
+
+		// Values the glyphs were laid out for
+		private boolean selected;
+		private int size;
+		private int alt;
+		private int spd;
+		private int targetAlt;
+		private long frame;
+
+	}
+
+}
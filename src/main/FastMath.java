@@ -0,0 +1,67 @@
+public class FastMath {
+
+	// Sine of every tenth of a degree. Values in between are interpolated, which keeps the error
+	// under 4e-7, far below anything the simulation can show
+	public static final double RESOLUTION = 0.1; // In deg
+	private static final int STEPS = (int) Math.round(360 / FastMath.RESOLUTION);
+	private static final double[] SIN = new double[FastMath.STEPS + 1];
+
+	static {
+		for (int i = 0; i <= FastMath.STEPS; i++)
+			FastMath.SIN[i] = Math.sin(Math.toRadians(i * FastMath.RESOLUTION));
+	}
+
+
+	private FastMath() { }
+
+
+	public static double sinDeg(double deg) {
+		double steps = deg * (1 / FastMath.RESOLUTION);
+		double floor = Math.floor(steps);
+		double fraction = steps - floor;
+		int i = (int) floor;
+		// Headings are almost always already in [0, 360), which skips the division
+		if (i < 0 || i >= FastMath.STEPS)
+			i = (int) Math.floorMod((long) floor, (long) FastMath.STEPS);
+		double lo = FastMath.SIN[i];
+		return lo + (FastMath.SIN[i + 1] - lo) * fraction;
+	}
+
+
+	public static double cosDeg(double deg) {
+		return FastMath.sinDeg(deg + 90);
+	}
+
+
+	public static double adjustHdg(double hdg) {
+		// Equivalent to AircraftMath::adjustHdg, without a loop. A tiny negative heading rounds
+		// up to exactly 360, which is wrapped to 0 by the select
+		double adjusted = hdg - 360 * Math.floor(hdg * (1.0 / 360));
+		return (adjusted >= 360) ? 0 : adjusted;
+	}
+
+
+	public static double hdgToTarget(double currentX, double currentY,
+									 double targetX, double targetY)
+	{
+		// y grows down the scope, so it is flipped to get a standard angle from east
+		double dx = targetX - currentX;
+		double dy = currentY - targetY;
+		if (dx == 0 && dy == 0)
+			return 0.0;
+		return FastMath.adjustHdg(90 - Math.toDegrees(Math.atan2(dy, dx)));
+	}
+
+
+	public static double approachHdg(double current, double target, double interval) {
+		double ceil = current + interval;
+		double floor = current - interval;
+		if (ceil > target && floor < target)
+			return target;
+
+		if (AircraftMath.hdgDifference(current, target) < 180)
+			return FastMath.adjustHdg(current + interval);
+		return FastMath.adjustHdg(current - interval);
+	}
+
+}
@@ -0,0 +1,167 @@
+import java.util.concurrent.locks.LockSupport;
+
+
+public class FrameScheduler {
+
+	// What to do with deadlines that passed while the caller was busy or stalled. SKIP drops
+	// them all and runs one step, CAP runs up to maxCatchUp steps and drops the rest, and BURST
+	// runs every one of them back to back, so the number of steps always matches wall time
+	public enum Policy {
+		SKIP,
+		CAP,
+		BURST
+	}
+
+
+	private long periodNanos;
+	private Policy policy;
+	private int maxCatchUp;
+
+	// Deadlines are at fixed multiples of the period from the first one, rather than a period
+	// after the last wake up, so oversleeping on one step does not push back every later one
+	private boolean started;
+	private long deadline;
+
+	// Jitter information. Lateness is how long after its deadline a step was woken up
+	private LatencyHistogram lateness;
+	private long lastLateness;
+	private long periods;
+	private long skipped;
+
+
+	public FrameScheduler(double rate, Policy policy, int maxCatchUp) {
+		if (rate <= 0)
+			throw new IllegalArgumentException("rate " + rate + " out of bounds");
+		if (policy == null)
+			throw new NullPointerException("policy cannot be null");
+		if (maxCatchUp <= 0)
+			throw new IllegalArgumentException("maxCatchUp " + maxCatchUp + " out of bounds");
+
+		this.periodNanos = Math.max(1, Math.round(1e9 / rate));
+		this.policy = policy;
+		this.maxCatchUp = maxCatchUp;
+		this.started = false;
+		this.lateness = new LatencyHistogram();
+		this.lastLateness = 0;
+		this.periods = 0;
+		this.skipped = 0;
+	}
+
+
+	public long getPeriodNanos() {
+		return this.periodNanos;
+	}
+
+
+	public synchronized Policy getPolicy() {
+		return this.policy;
+	}
+
+
+	public synchronized void setPolicy(Policy policy) {
+		if (policy == null)
+			throw new NullPointerException("policy cannot be null");
+		this.policy = policy;
+	}
+
+
+	public int awaitNext() throws InterruptedException {
+		// Parks until the next deadline, and returns how many steps to run for it, at least one
+		long currentNanos = System.nanoTime();
+		if (!this.started) {
+			this.deadline = currentNanos + this.periodNanos;
+			this.started = true;
+		}
+
+		// Parking can wake up early, so it is repeated until the deadline has really passed
+		while (currentNanos - this.deadline < 0) {
+			LockSupport.parkNanos(this.deadline - currentNanos);
+			if (Thread.interrupted())
+				throw new InterruptedException();
+			currentNanos = System.nanoTime();
+		}
+
+		// Every deadline up to now is due. The next deadline is the first one still ahead, so
+		// steps that are not run are dropped rather than owed
+		long late = currentNanos - this.deadline;
+		int due = (int) Math.min(Integer.MAX_VALUE, late / this.periodNanos + 1);
+		this.deadline += due * this.periodNanos;
+
+		synchronized (this) {
+			int run;
+			switch (this.policy) {
+			case SKIP:
+				run = 1;
+				break;
+			case CAP:
+				run = Math.min(due, this.maxCatchUp);
+				break;
+			default:
+				run = due;
+				break;
+			}
+
+			this.lateness.record(late);
+			this.lastLateness = late;
+			this.periods += due;
+			this.skipped += due - run;
+			return run;
+		}
+	}
+
+
+	public synchronized long getLastLateness() {
+		return this.lastLateness;
+	}
+
+
+	public synchronized long getPeriods() {
+		return this.periods;
+	}
+
+
+	public synchronized long getSkipped() {
+		return this.skipped;
+	}
+
+
+	public synchronized LatencyHistogram getLateness() {
+		return new LatencyHistogram(this.lateness);
+	}
+
+
+	public synchronized String getReport() {
+		return String.format("%d periods, %d skipped, late p50 %.1f us, p99 %.1f us, max %.1f us",
+							 this.periods, this.skipped,
+							 this.lateness.getValueAtPercentile(50) / 1e3,
+							 this.lateness.getValueAtPercentile(99) / 1e3,
+							 this.lateness.getMax() / 1e3);
+	}
+
+
+	public static void main(String[] args) throws InterruptedException {
+		if (args.length < 2) {
+			System.err.println("usage: java FrameScheduler <rate> <seconds> [policy]");
+			System.exit(1);
+		}
+
+		// Measure the jitter of this machine with nothing to do on each step
+		double rate = Double.parseDouble(args[0]);
+		int seconds = Integer.parseInt(args[1]);
+		Policy policy = (args.length > 2) ? Policy.valueOf(args[2].toUpperCase()) : Policy.BURST;
+		if (seconds <= 0)
+			throw new IllegalArgumentException("seconds " + seconds + " out of bounds");
+
+		FrameScheduler scheduler = new FrameScheduler(rate, policy, 1);
+		long startNanos = System.nanoTime();
+		long steps = 0;
+		while (System.nanoTime() - startNanos < seconds * 1_000_000_000L)
+			steps += scheduler.awaitNext();
+		double elapsed = (System.nanoTime() - startNanos) / 1e9;
+
+		System.out.println("steps:   " + steps + " in " + String.format("%.3f", elapsed) +
+						   " s (" + String.format("%.3f", steps / rate) + " s of steps)");
+		System.out.println("jitter:  " + scheduler.getReport());
+	}
+
+}
@@ -0,0 +1,63 @@
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+
+public class Headless {
+
+	// Real time between writes of the metrics file, in ms
+	public static final long METRICS_PERIOD = 1000;
+
+
+	private Headless() { }
+
+
+	public static void main(String[] args) {
+		if (args.length < 2) {
+			System.err.println("usage: java Headless <code> <minutes> [tickRate] [seed] " +
+							   "[recording] [metrics]");
+			System.exit(1);
+		}
+
+		AirportDefinition definition = new AirportRegistry().get(args[0].toUpperCase());
+		int minutes = Integer.parseInt(args[1]);
+		int tickRate = (args.length > 2) ? Integer.parseInt(args[2]) : SimulationEngine.TICK_RATE;
+		long seed = (args.length > 3) ? Long.parseLong(args[3]) : System.nanoTime();
+		if (minutes <= 0)
+			throw new IllegalArgumentException("minutes " + minutes + " out of bounds");
+
+		// Step the engine directly, as fast as possible, instead of pacing it to real time
+		Airport airport = new Airport(definition, seed);
+		Recorder recorder = null;
+		if (args.length > 4 && !args[4].isEmpty()) {
+			recorder = new Recorder(Paths.get(args[4]), airport);
+			airport.setRecorder(recorder);
+		}
+		Metrics metrics = airport.getContext().getMetrics();
+		Path metricsPath = (args.length > 5) ? Paths.get(args[5]) : null;
+		if (metricsPath != null)
+			metrics.startDumping(metricsPath, Headless.METRICS_PERIOD);
+		SimulationEngine engine = new SimulationEngine(airport, tickRate);
+		long ticks = (long) minutes * 60 * tickRate;
+
+		long startNanos = System.nanoTime();
+		for (long i = 0; i < ticks; i++)
+			engine.tick();
+		long endNanos = System.nanoTime();
+		if (recorder != null)
+			recorder.close();
+		if (metricsPath != null) {
+			metrics.stopDumping();
+			metrics.write(metricsPath);
+		}
+
+		double seconds = (endNanos - startNanos) / 1e9;
+		System.out.println("airport:   " + definition.getCode());
+		System.out.println("seed:      " + seed);
+		System.out.println("simulated: " + minutes + " min (" + ticks + " ticks)");
+		System.out.println("elapsed:   " + String.format("%.3f", seconds) + " s");
+		System.out.println("ticks/sec: " + String.format("%.0f", ticks / seconds));
+		System.out.println("flights:   " + airport.getFlights());
+		System.out.println("conflict:  " + airport.hasConflict());
+	}
+
+}
@@ -0,0 +1,185 @@
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+
+public class LatencyHistogram {
+
+	// Values are bucketed the way HdrHistogram does it: exactly below SUB_BUCKETS, then in
+	// SUB_BUCKETS / 2 linear steps per power of two, so any recorded value is within 1 / 64
+	// (about 1.6%) of the reported one, from nanoseconds up to centuries
+	private static final int SUB_BUCKET_BITS = 7;
+	private static final int SUB_BUCKETS = 1 << LatencyHistogram.SUB_BUCKET_BITS;
+	private static final int HALF = LatencyHistogram.SUB_BUCKETS / 2;
+	private static final int MAX_SHIFT = 63 - LatencyHistogram.SUB_BUCKET_BITS;
+	private static final int BUCKETS =
+		LatencyHistogram.SUB_BUCKETS + LatencyHistogram.MAX_SHIFT * LatencyHistogram.HALF;
+
+
+	// Not synchronized, callers that share a histogram between threads lock around it
+	private long[] counts;
+	private long count;
+	private long total;
+	private long max;
+
+
+	public LatencyHistogram() {
+		this.counts = new long[LatencyHistogram.BUCKETS];
+		this.reset();
+	}
+
+
+	public LatencyHistogram(LatencyHistogram histogram) {
+		if (histogram == null)
+			throw new NullPointerException("histogram cannot be null");
+
+		this.counts = histogram.counts.clone();
+		this.count = histogram.count;
+		this.total = histogram.total;
+		this.max = histogram.max;
+	}
+
+
+	private static int index(long value) {
+		if (value < LatencyHistogram.SUB_BUCKETS)
+			return (int) value;
+		int shift = 64 - Long.numberOfLeadingZeros(value) - LatencyHistogram.SUB_BUCKET_BITS;
+		int sub = (int) (value >>> shift) - LatencyHistogram.HALF;
+		return LatencyHistogram.SUB_BUCKETS + (shift - 1) * LatencyHistogram.HALF + sub;
+	}
+
+
+	private static long highestValue(int index) {
+		// Largest value that falls in the bucket at index
+		if (index < LatencyHistogram.SUB_BUCKETS)
+			return index;
+		int shift = (index - LatencyHistogram.SUB_BUCKETS) / LatencyHistogram.HALF + 1;
+		long sub = (index - LatencyHistogram.SUB_BUCKETS) % LatencyHistogram.HALF +
+			LatencyHistogram.HALF;
+		return ((sub + 1) << shift) - 1;
+	}
+
+
+	public void record(long value) {
+		// A clock that steps back can give a negative interval, which is counted as zero
+		value = Math.max(0, value);
+		this.counts[LatencyHistogram.index(value)]++;
+		this.count++;
+		this.total += value;
+		this.max = Math.max(this.max, value);
+	}
+
+
+	public void add(LatencyHistogram histogram) {
+		if (histogram == null)
+			throw new NullPointerException("histogram cannot be null");
+
+		for (int i = 0; i < this.counts.length; i++)
+			this.counts[i] += histogram.counts[i];
+		this.count += histogram.count;
+		this.total += histogram.total;
+		this.max = Math.max(this.max, histogram.max);
+	}
+
+
+	public void subtract(LatencyHistogram histogram) {
+		if (histogram == null)
+			throw new NullPointerException("histogram cannot be null");
+
+		// Takes out values that an earlier copy of this histogram already had. The largest of the
+		// values left is not known exactly, so it is the top of the highest bucket still in use
+		this.max = 0;
+		for (int i = 0; i < this.counts.length; i++) {
+			this.counts[i] -= histogram.counts[i];
+			if (this.counts[i] > 0)
+				this.max = LatencyHistogram.highestValue(i);
+		}
+		this.count -= histogram.count;
+		this.total -= histogram.total;
+	}
+
+
+	public void reset() {
+		Arrays.fill(this.counts, 0);
+		this.count = 0;
+		this.total = 0;
+		this.max = 0;
+	}
+
+
+	public long getCount() {
+		return this.count;
+	}
+
+
+	public long getMax() {
+		return this.max;
+	}
+
+
+	public double getMean() {
+		return (this.count == 0) ? 0 : (double) this.total / this.count;
+	}
+
+
+	public long getValueAtPercentile(double percentile) {
+		if (percentile < 0 || percentile > 100)
+			throw new IllegalArgumentException("percentile " + percentile + " out of bounds");
+		if (this.count == 0)
+			return 0;
+
+		// Smallest bucket that at least this fraction of values fall at or below
+		long rank = Math.max(1, (long) Math.ceil(percentile / 100 * this.count));
+		long seen = 0;
+		for (int i = 0; i < this.counts.length; i++) {
+			seen += this.counts[i];
+			if (seen >= rank)
+				return Math.min(LatencyHistogram.highestValue(i), this.max);
+		}
+		return this.max;
+	}
+
+
+
+	public static class Writer {
+
+		// Records values from one thread while others read them, without locks. Only the owning
+		// thread writes, so each update is a plain read and an ordered store. A copy taken while
+		// a value is being recorded may have some of it and not the rest. Values are never
+		// reset, so readers take the difference between two copies instead
+		private final AtomicLongArray counts;
+		private final AtomicLongArray totals; // Total and max
+
+
+		public Writer() {
+			this.counts = new AtomicLongArray(LatencyHistogram.BUCKETS);
+			this.totals = new AtomicLongArray(2);
+		}
+
+
+		public void record(long value) {
+			value = Math.max(0, value);
+			int i = LatencyHistogram.index(value);
+			this.counts.lazySet(i, this.counts.get(i) + 1);
+			this.totals.lazySet(0, this.totals.get(0) + value);
+			if (value > this.totals.get(1))
+				this.totals.lazySet(1, value);
+		}
+
+
+		public void addTo(LatencyHistogram histogram) {
+			if (histogram == null)
+				throw new NullPointerException("histogram cannot be null");
+
+			// The count is summed from the buckets read, so it always agrees with them
+			for (int i = 0; i < LatencyHistogram.BUCKETS; i++) {
+				long count = this.counts.get(i);
+				histogram.counts[i] += count;
+				histogram.count += count;
+			}
+			histogram.total += this.totals.get(0);
+			histogram.max = Math.max(histogram.max, this.totals.get(1));
+		}
+
+	}
+
+}
@@ -0,0 +1,191 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+
+public class Metrics {
+
+	// Names are prefixed with this in the export, so they do not collide with other programs
+	public static final String PREFIX = "approach_";
+
+
+	// Counters and gauges are registered once, up front, and only updated after that. Updates go
+	// to a LongAdder, which spreads threads that update at the same time over separate cells, so
+	// nothing locks or allocates once a cell exists. Sorted so the export is in a stable order
+	private Map<String, Counter> counters;
+	private Map<String, Gauge> gauges;
+	private ScheduledExecutorService dumper;
+
+
+	public Metrics() {
+		this.counters = new ConcurrentSkipListMap<>();
+		this.gauges = new ConcurrentSkipListMap<>();
+		this.dumper = null;
+	}
+
+
+	private static void checkName(String name) {
+		if (name == null)
+			throw new NullPointerException("name cannot be null");
+		if (!name.matches("[a-z_][a-z0-9_]*"))
+			throw new IllegalArgumentException("name " + name + " is not lowercase letters, " +
+											   "digits, and underscores");
+	}
+
+
+	public Counter counter(String name, String help) {
+		Metrics.checkName(name);
+		if (this.gauges.containsKey(name))
+			throw new IllegalArgumentException("name " + name + " is already a gauge");
+		return this.counters.computeIfAbsent(name, k -> new Counter(name, help));
+	}
+
+
+	public void gauge(String name, String help, LongSupplier value) {
+		Metrics.checkName(name);
+		if (value == null)
+			throw new NullPointerException("value cannot be null");
+		if (this.counters.containsKey(name))
+			throw new IllegalArgumentException("name " + name + " is already a counter");
+		this.gauges.put(name, new Gauge(name, help, value));
+	}
+
+
+	public String snapshot() {
+		// Prometheus text format, which most scrapers and plain text tools can read. Counters
+		// are read one at a time while they may still be changing, so a snapshot is not an
+		// atomic view of every value together
+		StringBuilder out = new StringBuilder();
+		for (Counter counter : this.counters.values())
+			Metrics.append(out, counter.name, counter.help, "counter", counter.sum());
+		for (Gauge gauge : this.gauges.values())
+			Metrics.append(out, gauge.name, gauge.help, "gauge", gauge.value.getAsLong());
+		return out.toString();
+	}
+
+
+	private static void append(StringBuilder out, String name, String help, String type,
+							   long value)
+	{
+		String fullName = Metrics.PREFIX + name;
+		if (help != null)
+			out.append("# HELP ").append(fullName).append(" ").append(help).append("\n");
+		out.append("# TYPE ").append(fullName).append(" ").append(type).append("\n");
+		out.append(fullName).append(" ").append(value).append("\n");
+	}
+
+
+	public void write(Path path) {
+		if (path == null)
+			throw new NullPointerException("path cannot be null");
+
+		// Written beside the file and moved over it, so a reader never sees half a snapshot
+		Path absolute = path.toAbsolutePath();
+		Path temp = absolute.resolveSibling(absolute.getFileName() + ".tmp");
+		try {
+			Files.write(temp, this.snapshot().getBytes(StandardCharsets.UTF_8));
+			Files.move(temp, absolute, StandardCopyOption.REPLACE_EXISTING,
+					   StandardCopyOption.ATOMIC_MOVE);
+		}
+		catch (IOException e) {
+			throw new UncheckedIOException("cannot write metrics to " + path, e);
+		}
+	}
+
+
+	public synchronized void startDumping(Path path, long periodMillis) {
+		if (path == null)
+			throw new NullPointerException("path cannot be null");
+		if (periodMillis <= 0)
+			throw new IllegalArgumentException("periodMillis " + periodMillis + " out of bounds");
+
+		this.stopDumping();
+		this.dumper = Executors.newSingleThreadScheduledExecutor(r -> {
+				Thread thread = new Thread(r, "MetricsDumper");
+				thread.setDaemon(true);
+				return thread;
+			});
+		this.dumper.scheduleAtFixedRate(() -> {
+				// A failed dump is reported and tried again next period
+				try {
+					this.write(path);
+				}
+				catch (UncheckedIOException e) {
+					e.printStackTrace();
+				}
+			}, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+	}
+
+
+	public synchronized void stopDumping() {
+		if (this.dumper == null)
+			return;
+		this.dumper.shutdown();
+		this.dumper = null;
+	}
+
+
+
+	public static class Counter {
+
+		private final String name;
+		private final String help;
+		private final LongAdder adder;
+
+
+		private Counter(String name, String help) {
+			this.name = name;
+			this.help = help;
+			this.adder = new LongAdder();
+		}
+
+
+		public String getName() {
+			return this.name;
+		}
+
+
+		public void increment() {
+			this.adder.increment();
+		}
+
+
+		public void add(long amount) {
+			this.adder.add(amount);
+		}
+
+
+		public long sum() {
+			return this.adder.sum();
+		}
+
+	}
+
+
+
+	private static class Gauge {
+
+		private final String name;
+		private final String help;
+		private final LongSupplier value;
+
+
+		private Gauge(String name, String help, LongSupplier value) {
+			this.name = name;
+			this.help = help;
+			this.value = value;
+		}
+
+	}
+
+}
@@ -0,0 +1,237 @@
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+
+public class Profiler {
+
+	// Parts of a tick and of a frame that are timed separately, and how late the tick and frame
+	// schedulers woke up after their deadlines
+	public enum Stage {
+		PHYSICS("physics"),
+		SEPARATION("separation"),
+		PROBE("probe"),
+		SPAWN("spawn"),
+		BACKGROUND("background"),
+		AIRCRAFT("aircraft"),
+		CONTROLS("controls"),
+		TICK_LATE("tick_late"),
+		FRAME_LATE("frame_late");
+
+		public final String label;
+
+		private Stage(String label) {
+			this.label = label;
+		}
+	}
+
+
+	private static final long WINDOW_NANOS = 1_000_000_000L;
+
+
+	// Stages are recorded from the engine thread and the event thread, each into histograms that
+	// only it writes, so recording never waits for a lock. Readers hold the lock on this profiler
+	// and merge every thread's histograms into a copy of the whole run. Once a second, the times
+	// of the last window are the difference between that copy and the one from a second before.
+	// Histograms are only allocated once something is recorded into them or reads them, since
+	// most profilers (one per airport in a batch) never draw a frame or have their times read
+	private ThreadLocal<AtomicReferenceArray<LatencyHistogram.Writer>> writers;
+	private List<AtomicReferenceArray<LatencyHistogram.Writer>> allWriters;
+	private LatencyHistogram[] merged;
+	private LatencyHistogram[] previous;
+	private LatencyHistogram[] last;
+	private LatencyHistogram running;
+	private long windowStartNanos;
+	private long windowFrames;
+	private long windowStartBytes;
+	private double framesPerSecond;
+	private double bytesPerSecond;
+	private boolean hasWindow;
+
+	// Running totals of every stage for export, which are never reset
+	private Metrics.Counter[] counts;
+	private Metrics.Counter[] nanos;
+
+	private ThreadMXBean threads;
+
+
+	public Profiler(Metrics metrics) {
+		if (metrics == null)
+			throw new NullPointerException("metrics cannot be null");
+
+		int stages = Stage.values().length;
+		this.allWriters = new CopyOnWriteArrayList<>();
+		this.writers = ThreadLocal.withInitial(() -> {
+				AtomicReferenceArray<LatencyHistogram.Writer> writers =
+					new AtomicReferenceArray<>(stages);
+				this.allWriters.add(writers);
+				return writers;
+			});
+		this.merged = null;
+		this.previous = null;
+		this.last = null;
+		this.running = null;
+		this.counts = new Metrics.Counter[stages];
+		this.nanos = new Metrics.Counter[stages];
+		for (Stage stage : Stage.values()) {
+			int i = stage.ordinal();
+			String name = "stage_" + stage.label;
+			this.counts[i] = metrics.counter(name + "_total", "Times the " + stage.label +
+											 " stage has run");
+			this.nanos[i] = metrics.counter(name + "_nanos_total", "Time spent in the " +
+											stage.label + " stage, in ns");
+			// Percentiles cover the last second of frames, or the whole run when nothing draws
+			String window = " stage over the last window, in ns";
+			metrics.gauge(name + "_p50_nanos", "Median time of the " + stage.label + window,
+						  () -> this.getValueAtPercentile(stage, 50));
+			metrics.gauge(name + "_p99_nanos", "99th percentile time of the " + stage.label +
+						  window, () -> this.getValueAtPercentile(stage, 99));
+		}
+
+		this.threads = ManagementFactory.getThreadMXBean();
+		this.windowStartNanos = System.nanoTime();
+		this.windowFrames = 0;
+		this.windowStartBytes = this.allocatedBytes();
+		this.framesPerSecond = 0;
+		this.bytesPerSecond = -1;
+		this.hasWindow = false;
+	}
+
+
+	private long allocatedBytes() {
+		// Allocation counters are a HotSpot extension, and are summed over the threads alive
+		// now, so memory allocated by threads that have since ended is not counted
+		if (!(this.threads instanceof com.sun.management.ThreadMXBean))
+			return -1;
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) this.threads;
+		if (!threads.isThreadAllocatedMemorySupported() ||
+			!threads.isThreadAllocatedMemoryEnabled())
+		{
+			return -1;
+		}
+
+		long bytes = 0;
+		for (long allocated : threads.getThreadAllocatedBytes(threads.getAllThreadIds())) {
+			if (allocated > 0)
+				bytes += allocated;
+		}
+		return bytes;
+	}
+
+
+	public long record(Stage stage, long startNanos) {
+		// Returns the end time, so consecutive stages can be timed from one reading each
+		long endNanos = System.nanoTime();
+		this.recordNanos(stage, endNanos - startNanos);
+		return endNanos;
+	}
+
+
+	public void recordNanos(Stage stage, long nanos) {
+		// Also for times measured elsewhere, such as how late a scheduler woke up
+		int i = stage.ordinal();
+		AtomicReferenceArray<LatencyHistogram.Writer> writers = this.writers.get();
+		LatencyHistogram.Writer writer = writers.get(i);
+		if (writer == null) {
+			writer = new LatencyHistogram.Writer();
+			writers.set(i, writer);
+		}
+		writer.record(nanos);
+		this.counts[i].increment();
+		this.nanos[i].add(Math.max(0, nanos));
+	}
+
+
+	private void merge(Stage stage, LatencyHistogram histogram) {
+		// Threads that have ended keep their writers, since what they recorded is still part
+		// of the run. A stage a thread has never recorded has no writer
+		histogram.reset();
+		for (AtomicReferenceArray<LatencyHistogram.Writer> writers : this.allWriters) {
+			LatencyHistogram.Writer writer = writers.get(stage.ordinal());
+			if (writer != null)
+				writer.addTo(histogram);
+		}
+	}
+
+
+	public synchronized void frame() {
+		this.windowFrames++;
+		long currentNanos = System.nanoTime();
+		long elapsedNanos = currentNanos - this.windowStartNanos;
+		if (elapsedNanos < Profiler.WINDOW_NANOS)
+			return;
+
+		// Close the window: measure rates over it, and keep its times for display
+		long bytes = this.allocatedBytes();
+		this.framesPerSecond = this.windowFrames * 1e9 / elapsedNanos;
+		this.bytesPerSecond = (bytes < 0 || this.windowStartBytes < 0) ?
+			-1 : (bytes - this.windowStartBytes) * 1e9 / elapsedNanos;
+		if (this.merged == null) {
+			// The first window starts from nothing recorded, so previous starts out empty
+			int stages = Stage.values().length;
+			this.merged = Profiler.newHistograms(stages);
+			this.previous = Profiler.newHistograms(stages);
+			this.last = Profiler.newHistograms(stages);
+		}
+		for (Stage stage : Stage.values()) {
+			int i = stage.ordinal();
+			this.merge(stage, this.merged[i]);
+			this.last[i].reset();
+			this.last[i].add(this.merged[i]);
+			this.last[i].subtract(this.previous[i]);
+		}
+		LatencyHistogram[] swap = this.previous;
+		this.previous = this.merged;
+		this.merged = swap;
+
+		this.windowStartNanos = currentNanos;
+		this.windowFrames = 0;
+		this.windowStartBytes = bytes;
+		this.hasWindow = true;
+	}
+
+
+	private static LatencyHistogram[] newHistograms(int length) {
+		LatencyHistogram[] histograms = new LatencyHistogram[length];
+		for (int i = 0; i < length; i++)
+			histograms[i] = new LatencyHistogram();
+		return histograms;
+	}
+
+
+	private LatencyHistogram latest(Stage stage) {
+		// The last full window once there is one, otherwise everything recorded so far, which is
+		// all there will be when nothing is drawing frames
+		if (this.hasWindow)
+			return this.last[stage.ordinal()];
+		if (this.running == null)
+			this.running = new LatencyHistogram();
+		this.merge(stage, this.running);
+		return this.running;
+	}
+
+
+	public synchronized LatencyHistogram getHistogram(Stage stage) {
+		return new LatencyHistogram(this.latest(stage));
+	}
+
+
+	public synchronized long getValueAtPercentile(Stage stage, double percentile) {
+		// Read in place, so a display can poll every frame without copying histograms
+		return this.latest(stage).getValueAtPercentile(percentile);
+	}
+
+
+	public synchronized double getFramesPerSecond() {
+		return this.framesPerSecond;
+	}
+
+
+	public synchronized double getBytesPerSecond() {
+		// -1 when this JVM can not count allocations
+		return this.bytesPerSecond;
+	}
+
+}
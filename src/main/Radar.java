@@ -0,0 +1,764 @@
+import javax.swing.JComponent;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Transparency;
+import java.awt.AlphaComposite;
+import java.awt.image.VolatileImage;
+import java.awt.RenderingHints;
+import java.awt.Rectangle;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Line2D;
+import java.awt.geom.Rectangle2D;
+import java.util.Arrays;
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.event.MouseListener;
+import java.awt.event.MouseEvent;
+
+
+public class Radar extends JComponent implements MouseListener {
+
+	// Fraction of the radar that can be dirty, summed over every dirty region, before the whole
+	// radar is repainted instead
+	public static final double DEFAULT_REPAINT_THRESHOLD = 0.5;
+
+	// Performance overlay, in the top left corner. The font is fixed width, so the size of the
+	// overlay is known without drawing it
+	private static final Font HUD_FONT = new Font(Font.MONOSPACED, Font.PLAIN, 12);
+	private static final int HUD_COLUMNS = 34;
+	private static final int HUD_MARGIN = 4; // In px
+	private static final Color HUD_BACKGROUND = new Color(0, 0, 0, 160);
+
+
+	// Display information, including the scale, shared with the rest of the simulation
+	private SimulationContext context;
+
+	// Grid and waypoints, which only change when the size does, drawn once into an offscreen
+	// image that is copied to the screen each frame
+	private VolatileImage background;
+	private boolean backgroundDirty;
+
+	// Fonts and aircraft data blocks, kept between frames
+	private DataBlockCache labels;
+
+	// Screen area covered by each thing that moves, when it was last painted and as of the
+	// latest repaint request. Both are repainted so old positions are erased
+	private Regions painted;
+	private Regions moving;
+	private Regions dirty;
+	private double repaintThreshold;
+
+	// World/game information
+	private Airport airport;
+
+
+	public Radar(Airport airport) {
+		this(airport, (airport != null) ? airport.getContext() : null);
+	}
+
+
+	public Radar(Airport airport, SimulationContext context) {
+		if (airport == null)
+			throw new NullPointerException("airport cannot be null");
+		if (context == null)
+			throw new NullPointerException("context cannot be null");
+
+		this.setFocusable(true);
+		this.addMouseListener(this);
+
+		this.airport = airport;
+		this.context = context;
+		this.background = null;
+		this.backgroundDirty = true;
+		this.labels = new DataBlockCache();
+		this.painted = new Regions();
+		this.moving = new Regions();
+		this.dirty = new Regions();
+		this.repaintThreshold = Radar.DEFAULT_REPAINT_THRESHOLD;
+		this.calculateConstants();
+	}
+
+
+	private void calculateConstants() {
+		int w = super.getBounds().width;
+		int h = super.getBounds().height;
+
+		int pxPerMile = Math.min(w, h) / this.airport.getRadarRange();
+		this.context.setPxPerMile(Math.max(1, pxPerMile));
+	}
+
+
+	public SimulationContext getContext() {
+		return this.context;
+	}
+
+
+	public Airport getAirport() {
+		return this.airport;
+	}
+
+
+	public double getRepaintThreshold() {
+		return this.repaintThreshold;
+	}
+
+
+	public void setRepaintThreshold(double repaintThreshold) {
+		if (repaintThreshold < 0 || repaintThreshold > 1)
+			throw new IllegalArgumentException("repaintThreshold " + repaintThreshold +
+											   " out of bounds");
+		this.repaintThreshold = repaintThreshold;
+	}
+
+
+	private static void include(Rectangle2D.Double bounds,
+								double x1, double y1, double x2, double y2)
+	{
+		double minX = Math.min(x1, x2);
+		double minY = Math.min(y1, y2);
+		double maxX = Math.max(x1, x2);
+		double maxY = Math.max(y1, y2);
+
+		// A negative width marks bounds that do not contain anything yet
+		if (bounds.width < 0)
+			bounds.setRect(minX, minY, maxX - minX, maxY - minY);
+		else {
+			bounds.add(minX, minY);
+			bounds.add(maxX, maxY);
+		}
+	}
+
+
+	private void movingBounds(Regions regions) {
+		// One region for each aircraft, warning, prediction, and the overlay, so things that
+		// are far apart are not repainted as one box with everything between them
+		int pxPerMile = this.context.getPxPerMile();
+		double size = pxPerMile / 2;
+		int fontSize = (int) (size * 1.7);
+		Rectangle2D.Double bounds = new Rectangle2D.Double(0, 0, -1, -1);
+		regions.clear();
+
+		Aircraft selected = this.airport.getSelected();
+		AircraftTable table = this.airport.getAircraft();
+		for (int row = 0; row < table.size(); row++) {
+			Aircraft aircraft = table.get(row);
+			double pxX = table.getX(row) * pxPerMile;
+			double pxY = table.getY(row) * pxPerMile;
+
+			// Body and vector line, which can point any way
+			double reach = Math.max(size, (table.getCurrentSpd(row) / 50) * size);
+			bounds.setRect(0, 0, -1, -1);
+			Radar.include(bounds, pxX - reach, pxY - reach, pxX + reach, pxY + reach);
+
+			// Separation and lost rings
+			double ring = 0;
+			if (this.context.showSepRings())
+				ring = ((!aircraft.isGA()) ? 3.0 : 1.0) / 2;
+			if (this.airport.isLost(aircraft))
+				ring = Math.max(ring, this.airport.getHorizSeparation() / 2.0);
+			ring *= pxPerMile;
+			Radar.include(bounds, pxX - ring, pxY - ring, pxX + ring, pxY + ring);
+
+			// Line to the target
+			if (aircraft == selected && !table.isHandedOff(row)) {
+				Waypoint target = table.getTarget(row);
+				Radar.include(bounds, pxX, pxY,
+							  target.getTargetX() * pxPerMile, target.getTargetY() * pxPerMile);
+			}
+
+			// Data block, from the last time it was drawn. Values can gain a digit since then,
+			// so one more character is allowed for
+			DataBlockCache.Label label = this.labels.peek(aircraft);
+			int lines = (label != null) ? label.lines.length : 3;
+			int height = (label != null) ? label.height : fontSize * 2;
+			int width = fontSize * 12;
+			if (label != null) {
+				width = 0;
+				for (int w : label.widths)
+					width = Math.max(width, w);
+				width += fontSize;
+			}
+			double strX = (table.getCurrentHdg(row) > 180) ? pxX + size * 2 : pxX - width - size;
+			Radar.include(bounds, strX, pxY - height, strX + width, pxY + lines * height);
+			regions.add(bounds);
+		}
+
+		// Warning and prediction lines, with their labels near the middle
+		for (Airport.Warning warning : this.airport.getWarnings()) {
+			double x1 = warning.x1 * pxPerMile;
+			double y1 = warning.y1 * pxPerMile;
+			double x2 = warning.x2 * pxPerMile;
+			double y2 = warning.y2 * pxPerMile;
+			bounds.setRect(0, 0, -1, -1);
+			Radar.include(bounds, x1, y1, x2, y2);
+			double midX = (x1 + x2) / 2;
+			double midY = (y1 + y2) / 2;
+			Radar.include(bounds, midX - pxPerMile * 2, midY - pxPerMile * 2,
+						  midX + pxPerMile * 2, midY + pxPerMile * 2);
+			regions.add(bounds);
+		}
+		for (ConflictProbe.Prediction prediction : this.airport.getPredictions()) {
+			double x1 = prediction.aircraft1.getX() * pxPerMile;
+			double y1 = prediction.aircraft1.getY() * pxPerMile;
+			double x2 = prediction.aircraft2.getX() * pxPerMile;
+			double y2 = prediction.aircraft2.getY() * pxPerMile;
+			bounds.setRect(0, 0, -1, -1);
+			Radar.include(bounds, x1, y1, x2, y2);
+			double midX = (x1 + x2) / 2;
+			double midY = (y1 + y2) / 2;
+			Radar.include(bounds, midX, midY - pxPerMile, midX + pxPerMile * 3, midY + pxPerMile);
+			regions.add(bounds);
+		}
+
+		// The overlay changes every frame
+		if (this.context.showHud())
+			regions.add(this.hudBounds());
+	}
+
+
+	public void repaintDirty() {
+		// Copied under the lock, since the last painted regions are written while painting
+		synchronized (this.airport) {
+			this.movingBounds(this.moving);
+			this.dirty.clear();
+			this.dirty.addAll(this.painted);
+			this.dirty.addAll(this.moving);
+		}
+
+		// Leave room for antialiasing, line width, and movement between now and the paint
+		int pad = Math.max(4, this.context.getPxPerMile() / 2);
+		double area = this.dirty.clip(pad, this.getWidth(), this.getHeight());
+		if (this.dirty.size() == 0)
+			return;
+
+		// Each region is requested on its own and the repaint manager coalesces them. Once
+		// enough of the radar is dirty, it is cheaper to repaint everything than each part
+		if (area > this.repaintThreshold * this.getWidth() * this.getHeight()) {
+			this.repaint();
+			return;
+		}
+		for (int i = 0; i < this.dirty.size(); i++) {
+			int x = (int) this.dirty.getMinX(i);
+			int y = (int) this.dirty.getMinY(i);
+			this.repaint(x, y, (int) this.dirty.getMaxX(i) - x, (int) this.dirty.getMaxY(i) - y);
+		}
+	}
+
+
+	private void paintRunway(Graphics g, Runway runway) {
+		Graphics2D gg = (Graphics2D) g.create();
+
+		int pxPerMile = this.context.getPxPerMile();
+		int startPxX = (int) (runway.getX() * pxPerMile);
+		int startPxY = (int) (runway.getY() * pxPerMile);
+		int endPxX = (int) (runway.getLength() * runway.getHdgX() * pxPerMile);
+		int endPxY = (int) (runway.getLength() * runway.getHdgY() * pxPerMile);
+
+		// Draw line and runway number
+		gg.setColor(Screen.RADAR_COLOR);
+		gg.setFont(new Font("Courier New", Font.PLAIN, pxPerMile));
+		gg.drawLine(startPxX, startPxY, startPxX + endPxX, startPxY - endPxY);
+		gg.drawString(runway.getIdentifier(), startPxX, startPxY);
+
+		// Draw entry triangle
+		int triPxX = startPxX - (int) (endPxX * 1.5);
+		int triPxY = startPxY + (int) (endPxY * 1.5);
+		int triSize = Math.max(1, pxPerMile / 3);
+		int[] triangleX = new int[] {triPxX - triSize, triPxX, triPxX + triSize};
+		int[] triangleY = new int[] {triPxY + triSize, triPxY - triSize, triPxY + triSize};
+		gg.drawPolygon(triangleX, triangleY, 3);
+
+		// Draw approach plate dotted lines
+		gg.setStroke(new BasicStroke(1, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND,
+									 0, new float[] {triSize}, triSize));
+		gg.drawLine(triPxX, triPxY, startPxX, startPxY);
+
+		// Dispose graphics copy
+		gg.dispose();
+	}
+
+
+	private void paintAirway(Graphics g, Airway airway) {
+		int pxSize = this.context.getPxPerMile();
+		int pxX = (int) (airway.getX() * pxSize);
+		int pxY = (int) (airway.getY() * pxSize);
+
+		g.setColor(Screen.RADAR_COLOR);
+	    g.setFont(new Font("Courier New", Font.PLAIN, pxSize));
+
+		int[] triangleX = new int[] {pxX - (pxSize / 2), pxX, pxX + (pxSize / 2)};
+		int[] triangleY = new int[] {pxY + (pxSize / 2), pxY - (pxSize) / 2, pxY + (pxSize / 2)};
+
+		g.drawPolygon(triangleX, triangleY, 3);
+		g.drawString(airway.getIdentifier(), pxX + (pxSize / 2), pxY);
+	}
+
+
+	private void paintAircraft(Graphics g, Aircraft aircraft, boolean selected) {
+		int pxPerMile = this.context.getPxPerMile();
+		double size = pxPerMile / 2;
+		Graphics2D gg = (Graphics2D) g.create();
+		gg.setRenderingHints(new RenderingHints(RenderingHints.KEY_ANTIALIASING,
+												RenderingHints.VALUE_ANTIALIAS_ON));
+
+		// Pixel-space information of the aircraft
+		double pxX = aircraft.getX() * pxPerMile;
+		double pxY = aircraft.getY() * pxPerMile;
+		double rad = (90.0 - aircraft.getCurrentHdg()) * (Math.PI / 180);
+
+		// Draw body
+		gg.rotate(-rad, pxX, pxY); // Angle signs are reversed by Graphics2D::rotate
+		gg.setStroke(new BasicStroke(1));
+		gg.setColor(Screen.RADAR_COLOR);
+		Rectangle body = new Rectangle();
+		body.setRect(pxX - size / 2.0, pxY - size / 2.0, size, size);
+		gg.draw(body);
+
+		// Draw vector arrow
+		double vectorLength = (aircraft.getCurrentSpd() / 50) * size;
+		gg.draw(new Line2D.Double(pxX, pxY, pxX + vectorLength, pxY));
+
+		// Undo changes to graphics angle
+		gg.rotate(rad, pxX, pxY);
+
+		// Draw dotted line to target if this aircraft is selected and it is not under
+		// tower's control yet
+		if (selected && !aircraft.isHandedOff()) {
+			double targetX = aircraft.getTarget().getTargetX() * pxPerMile;
+			double targetY = aircraft.getTarget().getTargetY() * pxPerMile;
+			gg.setStroke(new BasicStroke(1, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND,
+										 0, new float[] {pxPerMile / 2}, pxPerMile / 2));
+			gg.draw(new Line2D.Double(pxX, pxY, targetX, targetY));
+			gg.setStroke(new BasicStroke(1));
+		}
+
+		// Draw separation circle of 1.5 mile radius
+		if (this.context.showSepRings()) {
+			double radius = (!aircraft.isGA()) ? 3.0 : 1.0;
+			gg.setColor(new Color(220, 220, 220));
+			gg.draw(new Ellipse2D.Double(pxX - pxPerMile * radius / 2, pxY - pxPerMile * radius / 2,
+										 pxPerMile * radius, pxPerMile * radius));
+		}
+
+		// Draw information string, laid out again only when the values shown change
+		DataBlockCache.Label label = this.labels.get(gg, aircraft, selected, (int) (size * 1.7));
+		int strY = (int) pxY;
+		gg.setColor(Screen.RADAR_COLOR);
+		for (int i = 0; i < label.lines.length; i++) {
+			int strX = (aircraft.getCurrentHdg() > 180) ?
+				(int) (pxX + size * 2) :
+				(int) (pxX - label.widths[i] - size);
+			gg.drawGlyphVector(label.lines[i], strX, strY);
+			strY += label.height;
+		}
+
+		// Dispose graphics copy
+		gg.dispose();
+	}
+
+
+	private void paintSeparation(Graphics g) {
+		int pxPerMile = this.context.getPxPerMile();
+		Graphics2D gg = (Graphics2D) g.create();
+		gg.setFont(this.labels.getFont(Font.BOLD, (int) (pxPerMile * 0.7)));
+
+		for (Airport.Warning warning : this.airport.getWarnings()) {
+			double dx = Math.abs(warning.x1 - warning.x2);
+			double dy = Math.abs(warning.y1 - warning.y2);
+
+			// Set color based on distance
+			if (warning.violation)
+				gg.setColor(new Color(255, 0, 0));
+			else {
+				// Draw current separation
+				double separation = Math.round(warning.separation * 10) / 10.0;
+				String separationStr = Double.toString(separation);
+				int strW = gg.getFontMetrics().stringWidth(separationStr);
+				int strH = gg.getFontMetrics().getHeight();
+				double midX = Math.min(warning.x1, warning.x2) + dx / 2;
+				double midY = Math.min(warning.y1, warning.y2) + dy / 2;
+				int strX = (int) (midX * pxPerMile) - strW / 2;
+				int strY = (int) (midY * pxPerMile) - strH / 2;
+
+				// Draw solid rectangle background with black separation text
+				gg.setColor(Screen.RADAR_COLOR);
+				gg.fillRect(strX, strY, strW, strH);
+				gg.setColor(new Color(0, 0, 0));
+				gg.drawString(separationStr, strX, strY + (int) (strH * 0.7));
+
+				gg.setColor(Screen.RADAR_COLOR);
+			}
+
+			// Draw connecting line
+			gg.draw(new Line2D.Double(warning.x1 * pxPerMile, warning.y1 * pxPerMile,
+									  warning.x2 * pxPerMile, warning.y2 * pxPerMile));
+		}
+
+		// Dispose graphics copy
+		gg.dispose();
+	}
+
+
+	private void paintPredictions(Graphics g) {
+		int pxPerMile = this.context.getPxPerMile();
+		Graphics2D gg = (Graphics2D) g.create();
+		gg.setFont(this.labels.getFont(Font.BOLD, (int) (pxPerMile * 0.7)));
+		gg.setColor(new Color(255, 200, 0));
+		gg.setStroke(new BasicStroke(1, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND,
+									 0, new float[] {pxPerMile / 4}, pxPerMile / 4));
+
+		for (ConflictProbe.Prediction prediction : this.airport.getPredictions()) {
+			double x1 = prediction.aircraft1.getX() * pxPerMile;
+			double y1 = prediction.aircraft1.getY() * pxPerMile;
+			double x2 = prediction.aircraft2.getX() * pxPerMile;
+			double y2 = prediction.aircraft2.getY() * pxPerMile;
+
+			// Draw dotted line between the pair, labeled with the time to closest approach
+			gg.draw(new Line2D.Double(x1, y1, x2, y2));
+			String timeStr = (int) prediction.time + "s";
+			gg.drawString(timeStr, (int) ((x1 + x2) / 2), (int) ((y1 + y2) / 2));
+		}
+
+		// Dispose graphics copy
+		gg.dispose();
+	}
+
+
+	private Rectangle hudBounds() {
+		FontMetrics metrics = this.getFontMetrics(Radar.HUD_FONT);
+		int lines = Profiler.Stage.values().length + 3;
+		return new Rectangle(Radar.HUD_MARGIN, Radar.HUD_MARGIN,
+							 metrics.charWidth('0') * Radar.HUD_COLUMNS + Radar.HUD_MARGIN * 2,
+							 metrics.getHeight() * lines + Radar.HUD_MARGIN * 2);
+	}
+
+
+	private void paintHud(Graphics g) {
+		Profiler profiler = this.context.getProfiler();
+		Rectangle bounds = this.hudBounds();
+		Graphics2D gg = (Graphics2D) g.create();
+		gg.setColor(Radar.HUD_BACKGROUND);
+		gg.fill(bounds);
+
+		// Frame rate against the target, how fast memory is being allocated, and the speed the
+		// simulation is keeping up against the game speed
+		FontMetrics metrics = gg.getFontMetrics(Radar.HUD_FONT);
+		double bytesPerSecond = profiler.getBytesPerSecond();
+		String alloc = (bytesPerSecond < 0) ?
+			"n/a" : String.format("%.1f MB/s", bytesPerSecond / 1e6);
+		String[] lines = new String[Profiler.Stage.values().length + 3];
+		lines[0] = String.format("fps %5.1f / %d  alloc %s",
+								 profiler.getFramesPerSecond(), Screen.FRAME_RATE, alloc);
+		lines[1] = String.format("speed %.1fx / %dx", this.context.getAchievedSpeed(),
+								 this.context.getGameSpeed());
+		lines[2] = String.format("%-10s %10s %10s", "stage", "p50", "p99");
+
+		// Median and tail time of each stage over the last second
+		for (Profiler.Stage stage : Profiler.Stage.values()) {
+			double p50 = profiler.getValueAtPercentile(stage, 50) / 1e3;
+			double p99 = profiler.getValueAtPercentile(stage, 99) / 1e3;
+			lines[stage.ordinal() + 3] =
+				String.format("%-10s %7.1f us %7.1f us", stage.label, p50, p99);
+		}
+
+		gg.setFont(Radar.HUD_FONT);
+		gg.setColor(Screen.RADAR_COLOR);
+		int x = bounds.x + Radar.HUD_MARGIN;
+		int y = bounds.y + Radar.HUD_MARGIN + metrics.getAscent();
+		for (String line : lines) {
+			gg.drawString(line, x, y);
+			y += metrics.getHeight();
+		}
+
+		// Dispose graphics copy
+		gg.dispose();
+	}
+
+
+	private void paintBackground(Graphics g, int w, int h) {
+		// Draw grid
+		int pxPerMile = this.context.getPxPerMile();
+		g.setColor(Screen.RADAR_COLOR.darker().darker().darker().darker());
+	    for (int x = pxPerMile; x < w; x += pxPerMile)
+			g.drawLine(x, 0, x, h);
+		for (int y = pxPerMile; y < h; y += pxPerMile)
+			g.drawLine(0, y, w, y);
+
+		// Draw waypoints
+		for (Waypoint waypoint : this.airport.getWaypoints()) {
+			if (waypoint instanceof Runway)
+				this.paintRunway(g, (Runway) waypoint);
+			else if (waypoint instanceof Airway)
+				this.paintAirway(g, (Airway) waypoint);
+		}
+	}
+
+
+	private void renderBackground(int w, int h) {
+		Graphics2D gg = this.background.createGraphics();
+
+		// Start from a transparent image so whatever is behind the radar still shows through
+		gg.setComposite(AlphaComposite.Clear);
+		gg.fillRect(0, 0, w, h);
+		gg.setComposite(AlphaComposite.SrcOver);
+		this.paintBackground(gg, w, h);
+
+		gg.dispose();
+		this.backgroundDirty = false;
+	}
+
+
+	private void drawBackground(Graphics g, int w, int h) {
+		GraphicsConfiguration gc = this.getGraphicsConfiguration();
+		if (gc == null || w <= 0 || h <= 0) {
+			this.paintBackground(g, w, h);
+			return;
+		}
+
+		// The contents of a volatile image can be lost at any time, for example when the display
+		// mode changes, so it is re-rendered and drawn again until a copy gets through
+		do {
+			if (this.background == null ||
+				this.background.getWidth() != w || this.background.getHeight() != h)
+			{
+				if (this.background != null)
+					this.background.flush();
+				this.background = gc.createCompatibleVolatileImage(w, h, Transparency.TRANSLUCENT);
+				this.backgroundDirty = true;
+			}
+
+			int status = this.background.validate(gc);
+			if (status == VolatileImage.IMAGE_INCOMPATIBLE) {
+				this.background.flush();
+				this.background = gc.createCompatibleVolatileImage(w, h, Transparency.TRANSLUCENT);
+				this.backgroundDirty = true;
+			}
+			else if (status == VolatileImage.IMAGE_RESTORED)
+				this.backgroundDirty = true;
+
+			if (this.backgroundDirty)
+				this.renderBackground(w, h);
+			g.drawImage(this.background, 0, 0, null);
+		} while (this.background.contentsLost());
+	}
+
+
+	@Override
+	public void paintComponent(Graphics g) {
+		Graphics2D gg = (Graphics2D) g.create();
+
+		int w = super.getBounds().width;
+		int h = super.getBounds().height;
+
+		// Draw the cached grid and waypoints
+		Profiler profiler = this.context.getProfiler();
+		long startNanos = System.nanoTime();
+		this.drawBackground(g, w, h);
+		profiler.record(Profiler.Stage.BACKGROUND, startNanos);
+
+		// Hold the simulation still while drawing so a consistent state is shown. Waiting for
+		// the lock is not counted as drawing time
+		int pxPerMile = this.context.getPxPerMile();
+		synchronized (this.airport) {
+			startNanos = System.nanoTime();
+
+			// Draw aircraft
+			Aircraft selected = this.airport.getSelected();
+			AircraftTable table = this.airport.getAircraft();
+			Graphics2D labelG = (Graphics2D) g.create();
+			labelG.setRenderingHints(new RenderingHints(RenderingHints.KEY_ANTIALIASING,
+														RenderingHints.VALUE_ANTIALIAS_ON));
+			this.labels.beginFrame(labelG);
+			labelG.dispose();
+			for (int row = 0; row < table.size(); row++) {
+				Aircraft aircraft = table.get(row);
+				this.paintAircraft(g, aircraft, selected == aircraft);
+
+				// Draw red ring if this aircraft has left the airspace uncleared
+				if (this.airport.isLost(aircraft)) {
+					int horizSeparation = this.airport.getHorizSeparation();
+					double ringRadius = horizSeparation / 2.0;
+					double sepRingX = (aircraft.getX() - ringRadius) * pxPerMile;
+					double sepRingY = (aircraft.getY() - ringRadius) * pxPerMile;
+					gg.setColor(new Color(255, 0, 0));
+					gg.draw(new Ellipse2D.Double(sepRingX, sepRingY,
+												 pxPerMile * horizSeparation,
+												 pxPerMile * horizSeparation));
+				}
+			}
+
+			this.labels.endFrame();
+
+			// Draw predicted conflicts and separation warning lines
+			this.paintPredictions(g);
+			this.paintSeparation(g);
+
+			profiler.record(Profiler.Stage.AIRCRAFT, startNanos);
+
+			// Remember what was drawn, so the next dirty region covers it
+			this.movingBounds(this.painted);
+		}
+
+		if (this.context.showHud())
+			this.paintHud(g);
+		profiler.frame();
+
+		// Dispose graphics copy
+		gg.dispose();
+	}
+
+
+	@Override
+	public void setBounds(int x, int y, int w, int h) {
+		int oldPxPerMile = this.context.getPxPerMile();
+		super.setBounds(x, y, w, h);
+		this.calculateConstants();
+
+		// The size of the image is checked when drawing, but a new scale also needs a redraw
+		if (this.context.getPxPerMile() != oldPxPerMile)
+			this.backgroundDirty = true;
+	}
+
+
+	@Override
+	public void mousePressed(MouseEvent e) {
+		double clickX = e.getX();
+		double clickY = e.getY();
+		int pxPerMile = this.context.getPxPerMile();
+		double aircraftSize = pxPerMile / 2;
+
+		synchronized (this.airport) {
+			Aircraft selected = null;
+			AircraftTable table = this.airport.getAircraft();
+
+			for (int row = 0; row < table.size(); row++) {
+				Aircraft aircraft = table.get(row);
+				double aircraftX = aircraft.getX() * pxPerMile;
+				double aircraftY = aircraft.getY() * pxPerMile;
+
+				if (clickX > aircraftX - aircraftSize && clickX < aircraftX + aircraftSize * 2 &&
+					clickY > aircraftY - aircraftSize && clickY < aircraftY + aircraftSize * 2)
+				{
+					selected = aircraft;
+				}
+			}
+
+			this.airport.setSelected(selected);
+		}
+	}
+
+
+	@Override
+	public void mouseReleased(MouseEvent e) { }
+
+	@Override
+	public void mouseClicked(MouseEvent e) { }
+
+	@Override
+	public void mouseEntered(MouseEvent e) { }
+
+	@Override
+	public void mouseExited(MouseEvent e) { }
+
+
+
+	private static class Regions {
+
+		// Rectangles as [minX, minY, maxX, maxY, ...], reused from frame to frame
+		private double[] bounds;
+		private int size;
+
+
+		public Regions() {
+			this.bounds = new double[64];
+			this.size = 0;
+		}
+
+
+		public int size() {
+			return this.size;
+		}
+
+
+		public double getMinX(int i) {
+			return this.bounds[i * 4];
+		}
+
+
+		public double getMinY(int i) {
+			return this.bounds[i * 4 + 1];
+		}
+
+
+		public double getMaxX(int i) {
+			return this.bounds[i * 4 + 2];
+		}
+
+
+		public double getMaxY(int i) {
+			return this.bounds[i * 4 + 3];
+		}
+
+
+		public void clear() {
+			this.size = 0;
+		}
+
+
+		private void add(double minX, double minY, double maxX, double maxY) {
+			if (this.size * 4 == this.bounds.length)
+				this.bounds = Arrays.copyOf(this.bounds, this.bounds.length * 2);
+			int at = this.size * 4;
+			this.bounds[at] = minX;
+			this.bounds[at + 1] = minY;
+			this.bounds[at + 2] = maxX;
+			this.bounds[at + 3] = maxY;
+			this.size++;
+		}
+
+
+		public void add(Rectangle2D rectangle) {
+			// Bounds with a negative width do not contain anything
+			if (rectangle.getWidth() >= 0)
+				this.add(rectangle.getMinX(), rectangle.getMinY(),
+						 rectangle.getMaxX(), rectangle.getMaxY());
+		}
+
+
+		public void addAll(Regions regions) {
+			for (int i = 0; i < regions.size; i++)
+				this.add(regions.getMinX(i), regions.getMinY(i),
+						 regions.getMaxX(i), regions.getMaxY(i));
+		}
+
+
+		public double clip(int pad, int width, int height) {
+			// Grows each region to whole pixels plus pad, clips it to the component, drops the
+			// ones left empty, and returns the area of the rest. Overlaps are counted twice
+			double area = 0;
+			int kept = 0;
+			for (int i = 0; i < this.size; i++) {
+				double minX = Math.max(0, Math.floor(this.getMinX(i)) - pad);
+				double minY = Math.max(0, Math.floor(this.getMinY(i)) - pad);
+				double maxX = Math.min(width, Math.ceil(this.getMaxX(i)) + pad);
+				double maxY = Math.min(height, Math.ceil(this.getMaxY(i)) + pad);
+				if (maxX <= minX || maxY <= minY)
+					continue;
+				int at = kept * 4;
+				this.bounds[at] = minX;
+				this.bounds[at + 1] = minY;
+				this.bounds[at + 2] = maxX;
+				this.bounds[at + 3] = maxY;
+				area += (maxX - minX) * (maxY - minY);
+				kept++;
+			}
+			this.size = kept;
+			return area;
+		}
+
+	}
+
+}
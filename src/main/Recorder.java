@@ -0,0 +1,366 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+
+public class Recorder implements AutoCloseable {
+
+	public static final int MAGIC = 0x41435232; // "ACR2"
+	public static final int DEFAULT_KEYFRAME_INTERVAL = 600; // In ticks
+
+	// Every record is a type byte, the length of its payload, and the payload. The unwritten end
+	// of a mapped chunk reads as zeros, so a type of 0 marks the end of the recording
+	public static final byte END = 0;
+	public static final byte TICK = 1;
+	public static final byte KEYFRAME = 2;
+	public static final byte COMMAND = 3;
+
+	// Controller commands
+	public static final byte CLEARANCE = 0;
+	public static final byte HDG = 1;
+	public static final byte SPD = 2;
+	public static final byte ALT = 3;
+
+	// Per-aircraft fields, in the order they are written. An aircraft entry starts with a mask,
+	// and only the fields whose bit is set follow it
+	public static final int X = 0;
+	public static final int Y = 1;
+	public static final int CURRENT_ALT = 2;
+	public static final int TARGET_ALT = 3;
+	public static final int CURRENT_SPD = 4;
+	public static final int TARGET_SPD = 5;
+	public static final int CURRENT_HDG = 6;
+	public static final int TARGET_HDG = 7;
+	public static final int FIELDS = 8;
+	public static final int FLAGS_BIT = 1 << Recorder.FIELDS; // Cleared and handed off
+	public static final int SPAWN_BIT = 1 << (Recorder.FIELDS + 1); // Callsign, type, and target
+	public static final int ALL_BITS = (1 << (Recorder.FIELDS + 2)) - 1;
+
+	public static final byte CLEARED_FLAG = 1;
+	public static final byte HANDED_OFF_FLAG = 2;
+
+	private static final int CHUNK_SIZE = 1 << 20; // In bytes
+
+
+	private FileChannel channel;
+	private MappedByteBuffer buffer;
+	private long mappedAt;
+	private ByteBuffer scratch;
+
+	private Airport airport;
+	private Waypoint[] waypoints;
+	private int keyframeInterval;
+	private long tick;
+	private int nextKey;
+	private Map<Aircraft, Track> tracks;
+
+
+	public Recorder(Path path, Airport airport) {
+		this(path, airport, Recorder.DEFAULT_KEYFRAME_INTERVAL);
+	}
+
+
+	public Recorder(Path path, Airport airport, int keyframeInterval) {
+		if (path == null)
+			throw new NullPointerException("path cannot be null");
+		if (airport == null)
+			throw new NullPointerException("airport cannot be null");
+		if (keyframeInterval <= 0)
+			throw new IllegalArgumentException("keyframeInterval " + keyframeInterval +
+											   " out of bounds");
+
+		this.airport = airport;
+		this.waypoints = airport.getWaypoints();
+		this.keyframeInterval = keyframeInterval;
+		this.tick = 0;
+		this.nextKey = 0;
+		this.tracks = new IdentityHashMap<>();
+		this.scratch = ByteBuffer.allocate(4096);
+
+		try {
+			this.channel = FileChannel.open(path,
+											StandardOpenOption.CREATE,
+											StandardOpenOption.TRUNCATE_EXISTING,
+											StandardOpenOption.READ,
+											StandardOpenOption.WRITE);
+			this.mappedAt = 0;
+			this.buffer = this.channel.map(FileChannel.MapMode.READ_WRITE, 0, Recorder.CHUNK_SIZE);
+		}
+		catch (IOException e) {
+			throw new UncheckedIOException("cannot open recording " + path, e);
+		}
+
+		// The header holds enough to rebuild the airport, including its waypoints, on replay. The
+		// whole definition is stored, so a recording still replays if the airport file changes
+		byte[] definition = airport.getDefinition().encode();
+		this.scratch.clear();
+		this.ensure(4 + 4 + definition.length + 8 + 4);
+		this.scratch.putInt(Recorder.MAGIC);
+		this.scratch.putInt(definition.length);
+		this.scratch.put(definition);
+		this.scratch.putLong(airport.getSeed());
+		this.scratch.putInt(keyframeInterval);
+		this.scratch.flip();
+		this.buffer.put(this.scratch);
+
+		// Start with the aircraft that already exist, so replay can seek to tick 0
+		synchronized (airport) {
+			this.keyframe(airport);
+		}
+	}
+
+
+	public long getTick() {
+		return this.tick;
+	}
+
+
+	public int getKeyframeInterval() {
+		return this.keyframeInterval;
+	}
+
+
+	private void ensure(int bytes) {
+		if (this.scratch.remaining() >= bytes)
+			return;
+
+		int capacity = Math.max(this.scratch.capacity() * 2, this.scratch.position() + bytes);
+		ByteBuffer grown = ByteBuffer.allocate(capacity);
+		this.scratch.flip();
+		grown.put(this.scratch);
+		this.scratch = grown;
+	}
+
+
+	private void putString(String str) {
+		byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+		this.ensure(2 + bytes.length);
+		this.scratch.putShort((short) bytes.length);
+		this.scratch.put(bytes);
+	}
+
+
+	private int indexOf(Waypoint target) {
+		for (int i = 0; i < this.waypoints.length; i++) {
+			if (this.waypoints[i] == target)
+				return i;
+		}
+		throw new IllegalArgumentException("waypoint " + target + " is not part of the airport");
+	}
+
+
+	private Track track(Aircraft aircraft) {
+		Track track = this.tracks.get(aircraft);
+		if (track == null) {
+			track = new Track(this.nextKey++);
+			this.tracks.put(aircraft, track);
+		}
+		return track;
+	}
+
+
+	private void putEntry(AircraftTable table, int row, Track track, boolean full) {
+		float[] values = {
+			(float) table.getX(row),
+			(float) table.getY(row),
+			(float) table.getCurrentAlt(row),
+			(float) table.getTargetAlt(row),
+			(float) table.getCurrentSpd(row),
+			(float) table.getTargetSpd(row),
+			(float) table.getCurrentHdg(row),
+			(float) table.getTargetHdg(row)
+		};
+		byte flags = (byte) ((table.isCleared(row) ? Recorder.CLEARED_FLAG : 0) |
+							 (table.isHandedOff(row) ? Recorder.HANDED_OFF_FLAG : 0));
+
+		// Only write what changed since the last record of this aircraft
+		int mask = full ? Recorder.ALL_BITS : 0;
+		for (int i = 0; i < Recorder.FIELDS; i++) {
+			if (values[i] != track.values[i])
+				mask |= 1 << i;
+			track.values[i] = values[i];
+		}
+		if (flags != track.flags)
+			mask |= Recorder.FLAGS_BIT;
+		track.flags = flags;
+		if (mask == 0)
+			return;
+
+		this.ensure(4 + 2 + Recorder.FIELDS * 4 + 1);
+		this.scratch.putInt(track.key);
+		this.scratch.putShort((short) mask);
+		if ((mask & Recorder.SPAWN_BIT) != 0) {
+			Aircraft aircraft = table.get(row);
+			this.putString(aircraft.getId());
+			this.putString(aircraft.getType());
+			this.ensure(1 + 2 + Recorder.FIELDS * 4 + 1);
+			this.scratch.put((byte) (aircraft.isGA() ? 1 : 0));
+			this.scratch.putShort((short) this.indexOf(table.getTarget(row)));
+		}
+		for (int i = 0; i < Recorder.FIELDS; i++) {
+			if ((mask & (1 << i)) != 0)
+				this.scratch.putFloat(values[i]);
+		}
+		if ((mask & Recorder.FLAGS_BIT) != 0)
+			this.scratch.put(flags);
+	}
+
+
+	private void write(byte type) {
+		this.scratch.flip();
+		int length = this.scratch.remaining();
+
+		// Leave room for the type and length, and for a zero type byte after the record
+		try {
+			if (this.buffer.remaining() < 1 + 4 + length + 1) {
+				this.mappedAt += this.buffer.position();
+				this.buffer = this.channel.map(FileChannel.MapMode.READ_WRITE, this.mappedAt,
+											   Math.max(Recorder.CHUNK_SIZE, 1 + 4 + length + 1));
+			}
+		}
+		catch (IOException e) {
+			throw new UncheckedIOException("cannot extend recording", e);
+		}
+
+		this.buffer.put(type);
+		this.buffer.putInt(length);
+		this.buffer.put(this.scratch);
+	}
+
+
+	private void keyframe(Airport airport) {
+		AircraftTable table = airport.getAircraft();
+		this.scratch.clear();
+		this.scratch.putLong(this.tick);
+		this.scratch.putInt(airport.getFlights());
+		this.scratch.put((byte) (airport.hasConflict() ? 1 : 0));
+		this.scratch.putInt(table.size());
+		for (int row = 0; row < table.size(); row++) {
+			Track track = this.track(table.get(row));
+			track.seen = this.tick;
+			this.putEntry(table, row, track, true);
+		}
+		this.write(Recorder.KEYFRAME);
+	}
+
+
+	public synchronized void record(Airport airport, double seconds) {
+		if (this.channel == null)
+			throw new IllegalStateException("recorder is closed");
+		this.tick++;
+
+		AircraftTable table = airport.getAircraft();
+		this.scratch.clear();
+		this.scratch.putLong(this.tick);
+		this.scratch.putDouble(seconds);
+		this.scratch.putInt(airport.getFlights());
+		this.scratch.put((byte) (airport.hasConflict() ? 1 : 0));
+
+		// Aircraft that are new or changed, with the count filled in once it is known
+		int countAt = this.scratch.position();
+		this.scratch.putInt(0);
+		int count = 0;
+		for (int row = 0; row < table.size(); row++) {
+			Aircraft aircraft = table.get(row);
+			boolean spawned = !this.tracks.containsKey(aircraft);
+			Track track = this.track(aircraft);
+			track.seen = this.tick;
+
+			int before = this.scratch.position();
+			this.putEntry(table, row, track, spawned);
+			if (this.scratch.position() != before)
+				count++;
+		}
+		this.scratch.putInt(countAt, count);
+
+		// Aircraft that were not in the table this tick have been removed
+		countAt = this.scratch.position();
+		this.ensure(4);
+		this.scratch.putInt(0);
+		count = 0;
+		Iterator<Track> it = this.tracks.values().iterator();
+		while (it.hasNext()) {
+			Track track = it.next();
+			if (track.seen == this.tick)
+				continue;
+			this.ensure(4);
+			this.scratch.putInt(track.key);
+			it.remove();
+			count++;
+		}
+		this.scratch.putInt(countAt, count);
+		this.write(Recorder.TICK);
+
+		if (this.tick % this.keyframeInterval == 0)
+			this.keyframe(airport);
+	}
+
+
+	public synchronized void command(Aircraft aircraft, byte command, double value) {
+		if (this.channel == null)
+			throw new IllegalStateException("recorder is closed");
+		// Commands are stamped with the last tick recorded, which is only the tick they follow if
+		// no tick is running, so they have to be given and recorded under the airport lock
+		if (!Thread.holdsLock(this.airport))
+			throw new IllegalStateException("command recorded without holding the airport lock");
+		Track track = this.tracks.get(aircraft);
+		if (track == null)
+			return;
+
+		this.scratch.clear();
+		this.scratch.putLong(this.tick);
+		this.scratch.putInt(track.key);
+		this.scratch.put(command);
+		this.scratch.putFloat((float) value);
+		this.write(Recorder.COMMAND);
+	}
+
+
+	@Override
+	public synchronized void close() {
+		if (this.channel == null)
+			return;
+
+		try {
+			long length = this.mappedAt + this.buffer.position();
+			this.buffer.force();
+			this.buffer = null;
+			this.channel.truncate(length);
+			this.channel.close();
+		}
+		catch (IOException e) {
+			throw new UncheckedIOException("cannot close recording", e);
+		}
+		finally {
+			this.channel = null;
+		}
+	}
+
+
+
+	private static class Track {
+
+		public int key;
+		public long seen;
+		public float[] values;
+		public byte flags;
+
+
+		public Track(int key) {
+			this.key = key;
+			this.seen = -1;
+			this.values = new float[Recorder.FIELDS];
+			this.flags = 0;
+		}
+
+	}
+
+}
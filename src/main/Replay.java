@@ -0,0 +1,398 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.HashMap;
+import java.util.Set;
+import java.util.HashSet;
+
+
+public class Replay {
+
+	// Recording, read in place from the mapped file
+	private ByteBuffer file;
+	private ByteBuffer in;
+	private int keyframeInterval;
+
+	// Tick and offset of every keyframe, in tick order, used to seek without reading from the
+	// start of the recording
+	private List<Long> keyframeTicks;
+	private List<Integer> keyframeOffsets;
+	private long lastTick;
+
+	// Playback state. The airport holds the state after tick, and in is positioned at the first
+	// record of the next tick
+	private Airport airport;
+	private Map<Integer, Aircraft> aircraft;
+	private List<Command> commands;
+	private long tick;
+	private int flights;
+	private boolean hasConflict;
+	private double speed;
+	private double elapsed; // In sec (simulated)
+
+
+	public Replay(Path path) {
+		if (path == null)
+			throw new NullPointerException("path cannot be null");
+
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			this.file = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+		catch (IOException e) {
+			throw new UncheckedIOException("cannot open recording " + path, e);
+		}
+
+		if (this.file.remaining() < 4 || this.file.getInt() != Recorder.MAGIC)
+			throw new IllegalArgumentException("file " + path + " is not a recording");
+		int length = this.file.getInt();
+		ByteBuffer definition = this.file.slice();
+		definition.limit(length);
+		this.file.position(this.file.position() + length);
+		long seed = this.file.getLong();
+		this.keyframeInterval = this.file.getInt();
+		this.index();
+
+		// The same definition and seed give the same waypoints that the recording refers to.
+		// Aircraft only come from the recording, so the ones the airport starts with are removed
+		this.airport = new Airport(AirportDefinition.decode(definition), seed);
+		this.airport.setMaxAircraft(Integer.MAX_VALUE);
+		AircraftTable table = this.airport.getAircraft();
+		while (table.size() > 0)
+			this.airport.removeAircraft(table.get(0));
+
+		this.aircraft = new HashMap<>();
+		this.commands = new ArrayList<>();
+		this.in = this.file.duplicate();
+		this.tick = -1;
+		this.speed = 1;
+		this.elapsed = 0;
+		this.seek(0);
+	}
+
+
+	private static String getString(ByteBuffer in) {
+		byte[] bytes = new byte[in.getShort()];
+		in.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+
+	private void index() {
+		this.keyframeTicks = new ArrayList<>();
+		this.keyframeOffsets = new ArrayList<>();
+		this.lastTick = 0;
+
+		// Every payload starts with its tick, so indexing only reads record headers
+		int at = this.file.position();
+		while (at + 1 + 4 + 8 <= this.file.limit()) {
+			byte type = this.file.get(at);
+			if (type == Recorder.END)
+				break;
+			int length = this.file.getInt(at + 1);
+			long tick = this.file.getLong(at + 1 + 4);
+			if (type == Recorder.KEYFRAME) {
+				this.keyframeTicks.add(tick);
+				this.keyframeOffsets.add(at);
+			}
+			this.lastTick = Math.max(this.lastTick, tick);
+			at += 1 + 4 + length;
+		}
+
+		if (this.keyframeTicks.isEmpty())
+			throw new IllegalArgumentException("recording has no keyframes");
+	}
+
+
+	public Airport getAirport() {
+		return this.airport;
+	}
+
+
+	public long getTick() {
+		return this.tick;
+	}
+
+
+	public long getLastTick() {
+		return this.lastTick;
+	}
+
+
+	public int getKeyframeInterval() {
+		return this.keyframeInterval;
+	}
+
+
+	public List<Command> getCommands() {
+		return this.commands;
+	}
+
+
+	public double getSpeed() {
+		return this.speed;
+	}
+
+
+	public void setSpeed(double speed) {
+		if (speed < 0)
+			throw new IllegalArgumentException("speed " + speed + " out of bounds");
+		this.speed = speed;
+	}
+
+
+	public boolean isFinished() {
+		return this.tick >= this.lastTick;
+	}
+
+
+	private int readEntry() {
+		AircraftTable table = this.airport.getAircraft();
+		int key = this.in.getInt();
+		int mask = this.in.getShort() & 0xFFFF;
+
+		Aircraft aircraft = this.aircraft.get(key);
+		if ((mask & Recorder.SPAWN_BIT) != 0) {
+			String id = Replay.getString(this.in);
+			String type = Replay.getString(this.in);
+			boolean isGA = this.in.get() != 0;
+			Waypoint target = this.airport.getWaypoints()[this.in.getShort()];
+			if (aircraft == null) {
+				aircraft = new Aircraft(target, id, type, isGA);
+				this.airport.addAircraft(aircraft);
+				this.aircraft.put(key, aircraft);
+			}
+		}
+		if (aircraft == null)
+			throw new IllegalStateException("recording refers to unknown aircraft " + key);
+
+		int row = aircraft.getRow();
+		for (int i = 0; i < Recorder.FIELDS; i++) {
+			if ((mask & (1 << i)) == 0)
+				continue;
+			double value = this.in.getFloat();
+			switch (i) {
+			case Recorder.X: table.setX(row, value); break;
+			case Recorder.Y: table.setY(row, value); break;
+			case Recorder.CURRENT_ALT: table.setCurrentAlt(row, value); break;
+			case Recorder.TARGET_ALT: table.setTargetAlt(row, value); break;
+			case Recorder.CURRENT_SPD: table.setCurrentSpd(row, value); break;
+			case Recorder.TARGET_SPD: table.setTargetSpd(row, value); break;
+			case Recorder.CURRENT_HDG: table.setCurrentHdg(row, value); break;
+			case Recorder.TARGET_HDG: table.setTargetHdg(row, value); break;
+			}
+		}
+		if ((mask & Recorder.FLAGS_BIT) != 0) {
+			byte flags = this.in.get();
+			table.setCleared(row, (flags & Recorder.CLEARED_FLAG) != 0);
+			table.setHandedOff(row, (flags & Recorder.HANDED_OFF_FLAG) != 0);
+		}
+		return key;
+	}
+
+
+	private void remove(int key) {
+		Aircraft aircraft = this.aircraft.remove(key);
+		if (aircraft == null)
+			return;
+		this.airport.removeAircraft(aircraft);
+		if (this.airport.getSelected() == aircraft)
+			this.airport.setSelected(null);
+	}
+
+
+	private void readKeyframe() {
+		this.tick = this.in.getLong();
+		this.flights = this.in.getInt();
+		this.hasConflict = this.in.get() != 0;
+
+		// A keyframe holds the whole state, so aircraft that are not in it are gone. Aircraft
+		// that are in it keep their object, so the selection survives a seek
+		Set<Integer> keys = new HashSet<>();
+		int count = this.in.getInt();
+		for (int i = 0; i < count; i++)
+			keys.add(this.readEntry());
+		for (Integer key : new ArrayList<>(this.aircraft.keySet())) {
+			if (!keys.contains(key))
+				this.remove(key);
+		}
+	}
+
+
+	private void readTick() {
+		this.tick = this.in.getLong();
+		this.in.getDouble(); // Seconds, only needed for pacing
+		this.flights = this.in.getInt();
+		this.hasConflict = this.in.get() != 0;
+
+		int count = this.in.getInt();
+		for (int i = 0; i < count; i++)
+			this.readEntry();
+		int removed = this.in.getInt();
+		for (int i = 0; i < removed; i++)
+			this.remove(this.in.getInt());
+	}
+
+
+	private void readCommand() {
+		long tick = this.in.getLong();
+		Aircraft aircraft = this.aircraft.get(this.in.getInt());
+		byte command = this.in.get();
+		double value = this.in.getFloat();
+		this.commands.add(new Command(tick, aircraft, command, value));
+	}
+
+
+	private byte peek() {
+		if (this.in.remaining() < 1 + 4 + 8)
+			return Recorder.END;
+		return this.in.get(this.in.position());
+	}
+
+
+	private void readFollowing() {
+		// Commands and keyframes are stamped with the tick before them, so they belong to the
+		// current state. A keyframe here repeats what was just read, and is skipped
+		while (this.peek() == Recorder.COMMAND || this.peek() == Recorder.KEYFRAME) {
+			byte type = this.in.get();
+			int length = this.in.getInt();
+			int end = this.in.position() + length;
+			if (type == Recorder.COMMAND)
+				this.readCommand();
+			this.in.position(end);
+		}
+	}
+
+
+	private boolean step() {
+		if (this.peek() != Recorder.TICK)
+			return false;
+
+		this.commands.clear();
+		this.in.get();
+		int length = this.in.getInt();
+		int end = this.in.position() + length;
+		this.readTick();
+		this.in.position(end);
+		this.readFollowing();
+		return true;
+	}
+
+
+	public synchronized void seek(long tick) {
+		tick = Math.max(0, Math.min(tick, this.lastTick));
+
+		synchronized (this.airport) {
+			// Start from the nearest keyframe at or before the tick, unless playing forward from
+			// the current position is shorter
+			int k = 0;
+			while (k + 1 < this.keyframeTicks.size() && this.keyframeTicks.get(k + 1) <= tick)
+				k++;
+			if (tick < this.tick || this.keyframeTicks.get(k) > this.tick) {
+				this.commands.clear();
+				this.in.position(this.keyframeOffsets.get(k));
+				this.in.get();
+				int length = this.in.getInt();
+				int end = this.in.position() + length;
+				this.readKeyframe();
+				this.in.position(end);
+				this.readFollowing();
+			}
+
+			while (this.tick < tick) {
+				if (!this.step())
+					break;
+			}
+			this.elapsed = 0;
+			this.airport.restore(this.flights, this.hasConflict);
+		}
+	}
+
+
+	public synchronized void update(double seconds) {
+		// Playback runs at its own speed, independent of the speed the game was played at
+		this.elapsed += seconds * this.speed;
+
+		synchronized (this.airport) {
+			boolean stepped = false;
+			while (this.peek() == Recorder.TICK) {
+				double tickSeconds = this.in.getDouble(this.in.position() + 1 + 4 + 8);
+				if (this.elapsed < tickSeconds)
+					break;
+				this.elapsed -= tickSeconds;
+				stepped |= this.step();
+			}
+			if (this.isFinished())
+				this.elapsed = 0;
+			if (stepped)
+				this.airport.restore(this.flights, this.hasConflict);
+		}
+	}
+
+
+	public static void main(String[] args) {
+		if (args.length < 1) {
+			System.err.println("usage: java Replay <file> [tick]");
+			System.exit(1);
+		}
+
+		Replay replay = new Replay(Paths.get(args[0]));
+		long tick = (args.length > 1) ? Long.parseLong(args[1]) : replay.getLastTick();
+		replay.seek(tick);
+
+		Airport airport = replay.getAirport();
+		System.out.println("airport:     " + airport.getCode());
+		System.out.println("tick:        " + replay.getTick() + " of " + replay.getLastTick());
+		System.out.println("flights:     " + airport.getFlights());
+		System.out.println("conflict:    " + airport.hasConflict());
+		System.out.println("warnings:    " + airport.getWarnings().size());
+		System.out.println("predictions: " + airport.getPredictions().size());
+		AircraftTable table = airport.getAircraft();
+		for (int row = 0; row < table.size(); row++)
+			System.out.println(table.get(row).toComplexString().replace("\n", " "));
+		for (Command command : replay.getCommands())
+			System.out.println(command);
+	}
+
+
+
+	public static class Command {
+
+		public long tick;
+		public Aircraft aircraft;
+		public byte command;
+		public double value;
+
+
+		public Command(long tick, Aircraft aircraft, byte command, double value) {
+			this.tick = tick;
+			this.aircraft = aircraft;
+			this.command = command;
+			this.value = value;
+		}
+
+
+		@Override
+		public String toString() {
+			String name;
+			switch (this.command) {
+			case Recorder.CLEARANCE: name = "clearance"; break;
+			case Recorder.HDG: name = "hdg"; break;
+			case Recorder.SPD: name = "spd"; break;
+			case Recorder.ALT: name = "alt"; break;
+			default: name = "command " + this.command; break;
+			}
+			String id = (this.aircraft != null) ? this.aircraft.getId() : "?";
+			return "tick " + this.tick + ": " + id + " " + name + " " + (int) this.value;
+		}
+
+	}
+
+}
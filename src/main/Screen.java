@@ -4,31 +4,47 @@ import javax.swing.JSpinner;
 import javax.swing.SpinnerNumberModel;
 import javax.swing.JLabel;
 import javax.swing.JComboBox;
+import javax.swing.JCheckBox;
+import javax.swing.JSlider;
+import javax.swing.JFileChooser;
+import javax.swing.JOptionPane;
+import javax.swing.SwingUtilities;
 import java.awt.Component;
 import java.awt.Graphics;
 import java.awt.Color;
 import java.awt.Dimension;
 import java.awt.Point;
 import java.awt.Font;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 
 
 public class Screen extends JPanel {
 
 	public static final Color RADAR_COLOR = new Color(130, 240, 70);
 	public static final int FRAME_RATE = 30;
+	public static final Path RECORDINGS_DIR = Paths.get("recordings");
 
 
 	// Main menu components
-	private JComboBox<Airport.Code> airportComboBox;
+	private JComboBox<String> airportComboBox;
 	private JButton playButton;
+	private JCheckBox recordCheckBox;
+	private JButton replayButton;
 	
 	
 	// Game settings and components
 	private JSpinner gameSpeedSpinner;
 	private JButton toggleSepRingsButton;
+	private JButton toggleHudButton;
 	private JLabel scoreLabel;
-	private static int gameSpeed = 1;
-	private static boolean showSepRings = false;
+
+	// Replay settings and components
+	private JSpinner replaySpeedSpinner;
+	private JSlider replaySlider;
+	private boolean followingReplay; // Slider is being moved by playback, on the event thread
 	
 
 	// Display information
@@ -48,8 +64,16 @@ public class Screen extends JPanel {
 	private int controlsHeight;
 
 	// World/game information
+	private AirportRegistry airports;
 	private Airport airport;
+	private Radar radar;
+	private SimulationEngine engine;
 	private Controls controls;
+	private Recorder recorder;
+	private Replay replay;
+
+	// Performance information
+	private volatile double framesPerSecond;
 	
 
 	public Screen() {
@@ -57,31 +81,94 @@ public class Screen extends JPanel {
 		this.screenWidth = 900;
 		this.screenHeight = 600 + this.settingsMargin;
 		this.calculateConstants();
+		this.airports = new AirportRegistry();
 
 		// Main menu components
-		this.airportComboBox = new JComboBox<>(new Airport.Code[] {Airport.Code.KJFK,
-																   Airport.Code.KSFO,
-																   Airport.Code.EGLL,
-																   Airport.Code.KPAO});
+		this.airportComboBox = new JComboBox<>(this.airports.getCodes().toArray(new String[0]));
 		this.playButton = new JButton("Start");
+		this.recordCheckBox = new JCheckBox("Record");
+		this.replayButton = new JButton("Replay");
 
 		this.playButton.addActionListener(e -> {
-				this.airport = new Airport((Airport.Code) this.airportComboBox.getSelectedItem());
+				String code = (String) this.airportComboBox.getSelectedItem();
+				this.airport = new Airport(this.airports.get(code));
+				if (this.recordCheckBox.isSelected())
+					this.startRecording();
+				this.radar = new Radar(this.airport);
+				this.controls.setAirport(this.airport);
+				this.controls.setProfiler(this.airport.getContext().getProfiler());
+				this.engine = new SimulationEngine(this.airport);
+				this.airport.getContext().setGameSpeed((Integer) this.gameSpeedSpinner.getValue());
 				this.displayGame();
+				this.engine.start();
+			});
+
+		this.replayButton.addActionListener(e -> {
+				JFileChooser chooser = new JFileChooser(Screen.RECORDINGS_DIR.toFile());
+				if (chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION)
+					return;
+				try {
+					this.replay = new Replay(chooser.getSelectedFile().toPath());
+				}
+				catch (RuntimeException ex) {
+					JOptionPane.showMessageDialog(this, ex.getMessage(), "Replay",
+												  JOptionPane.ERROR_MESSAGE);
+					return;
+				}
+				this.airport = this.replay.getAirport();
+				this.radar = new Radar(this.airport);
+				this.replaySlider.setMaximum((int) this.replay.getLastTick());
+				this.displayReplay();
 			});
 
 		// Game components
-		this.gameSpeedSpinner = new JSpinner(new SpinnerNumberModel(1, 0, 10, 1));
+		this.gameSpeedSpinner =
+			new JSpinner(new SpinnerNumberModel(1, 0, SimulationContext.MAX_GAME_SPEED, 1));
 		this.toggleSepRingsButton = new JButton("Toggle Sep Rings");
+		this.toggleHudButton = new JButton("Toggle HUD");
 		this.scoreLabel = new JLabel();
 
-		this.gameSpeedSpinner.addChangeListener(e -> Screen.gameSpeed =
-												(Integer) this.gameSpeedSpinner.getValue());
-		this.toggleSepRingsButton.addActionListener(e ->
-													Screen.showSepRings = !Screen.showSepRings);
+		this.gameSpeedSpinner.addChangeListener(e -> {
+				if (this.engine != null) {
+					int gameSpeed = (Integer) this.gameSpeedSpinner.getValue();
+					this.airport.getContext().setGameSpeed(gameSpeed);
+				}
+			});
+		this.toggleSepRingsButton.addActionListener(e -> {
+				if (this.radar != null) {
+					SimulationContext context = this.radar.getContext();
+					context.setShowSepRings(!context.showSepRings());
+				}
+			});
+		this.toggleHudButton.addActionListener(e -> {
+				if (this.radar != null) {
+					SimulationContext context = this.radar.getContext();
+					context.setShowHud(!context.showHud());
+				}
+			});
+
+		// Replay components. Playback speed is separate from the game speed
+		this.replaySpeedSpinner = new JSpinner(new SpinnerNumberModel(1, 0, 100, 1));
+		this.replaySlider = new JSlider(0, 0, 0);
+
+		this.replaySpeedSpinner.addChangeListener(e -> {
+				if (this.replay != null)
+					this.replay.setSpeed((Integer) this.replaySpeedSpinner.getValue());
+			});
+		this.replaySlider.addChangeListener(e -> {
+				// Only the user moving the slider seeks, not playback moving it along
+				if (this.replay != null && !this.followingReplay &&
+					this.replaySlider.getValue() != this.replay.getTick())
+				{
+					this.replay.seek(this.replaySlider.getValue());
+				}
+			});
 
 		// Game objects
-		this.controls = null;
+		this.controls = new Controls();
+		this.recorder = null;
+		this.replay = null;
+		this.followingReplay = false;
 
 		// Display main menu
 		this.displayMain();
@@ -103,13 +190,25 @@ public class Screen extends JPanel {
 	}
 
 
-	public static int gameSpeed() {
-		return Screen.gameSpeed;
+	private void startRecording() {
+		// The recording is memory mapped, so what has been written survives the game exiting
+		// without closing it
+		try {
+			Files.createDirectories(Screen.RECORDINGS_DIR);
+		}
+		catch (IOException e) {
+			e.printStackTrace();
+			return;
+		}
+		String name = this.airport.getCode() + "-" + this.airport.getSeed() + ".acr";
+		this.recorder = new Recorder(Screen.RECORDINGS_DIR.resolve(name), this.airport);
+		this.airport.setRecorder(this.recorder);
+		this.controls.setRecorder(this.recorder);
 	}
 
 
-	public static boolean showSepRings() {
-		return Screen.showSepRings;
+	public double getFramesPerSecond() {
+		return this.framesPerSecond;
 	}
 
 
@@ -125,17 +224,34 @@ public class Screen extends JPanel {
 
 		this.add(this.airportComboBox);
 		this.add(this.playButton);
+		this.add(this.recordCheckBox);
+		this.add(this.replayButton);
 	}
 
 
 	private void displayGame() {
 		this.clear();
 
-		this.add(this.airport);
+		this.add(this.radar);
 		this.add(this.scoreLabel);
 		this.add(new JLabel("          Game Speed: "));
 		this.add(this.gameSpeedSpinner);
 		this.add(this.toggleSepRingsButton);
+		this.add(this.toggleHudButton);
+		this.add(this.controls);
+	}
+
+
+	private void displayReplay() {
+		this.clear();
+
+		this.add(this.radar);
+		this.add(this.scoreLabel);
+		this.add(new JLabel("          Replay Speed: "));
+		this.add(this.replaySpeedSpinner);
+		this.add(this.replaySlider);
+		this.add(this.toggleSepRingsButton);
+		this.add(this.toggleHudButton);
 	}
 
 
@@ -184,20 +300,20 @@ public class Screen extends JPanel {
 					   this.settingsMargin, this.margin, this.screenHeight);
 			
 			// Controls
-			if (this.controls != null)
-				this.controls.setBounds(this.controlsOffsetX, this.controlsOffsetY,
-										this.controlsWidth, this.controlsHeight);
+			this.controls.setBounds(this.controlsOffsetX, this.controlsOffsetY,
+									this.controlsWidth, this.controlsHeight);
 			
 			// Update score
 			this.scoreLabel.setText("Flights: " + this.airport.getFlights());
 			
 			// Update airport size as needed
-			this.airport.setBounds(this.radarOffsetX, this.radarOffsetY,
-								   this.radarWidth, this.radarHeight);
+			this.radar.setBounds(this.radarOffsetX, this.radarOffsetY,
+								 this.radarWidth, this.radarHeight);
 			
 			// Game over screen
 			if (this.airport.hasConflict()) {
-				Screen.gameSpeed = 0;
+				if (this.engine != null)
+					this.airport.getContext().setGameSpeed(0);
 				g.setColor(new Color(255, 0, 0));
 				g.setFont(new Font("Courier New", Font.BOLD,
 								   Math.min(this.radarWidth, this.radarHeight) / 10));
@@ -212,39 +328,81 @@ public class Screen extends JPanel {
 
 
 	public void update() {
+		// Frames are paced to absolute deadlines. A late frame is never made up for by drawing
+		// several at once, since only the latest state is worth showing
+		FrameScheduler scheduler = new FrameScheduler(Screen.FRAME_RATE,
+													  FrameScheduler.Policy.SKIP, 1);
+		long windowStartNanos = System.nanoTime();
+		long windowFrames = 0;
+		long lastNanos = System.nanoTime();
+		Aircraft bound = null;
+		long shownTick = -1;
+
 		while (true) {			
-			long startMillis = System.currentTimeMillis();
+			// Advance a replay by the real time since the last frame
+			long frameNanos = System.nanoTime();
+			if (this.replay != null) {
+				this.replay.update((frameNanos - lastNanos) / 1e9);
+				long tick = this.replay.getTick();
+				if (tick != shownTick) {
+					SwingUtilities.invokeLater(() -> {
+							this.followingReplay = true;
+							this.replaySlider.setValue((int) tick);
+							this.followingReplay = false;
+						});
+					shownTick = tick;
+				}
+			}
+			lastNanos = frameNanos;
 
 			// Update the displayed controls
-			if (this.airport != null) {
-				Aircraft selected = this.airport.getSelected();
-				if (selected == null && this.controls != null) {
-					this.remove(this.controls);
-					this.controls = null;
+			if (this.airport != null && this.replay == null) {
+				// The one controls panel is bound to the selected aircraft, and hidden when there
+				// is nothing to control. Binding shows, hides, and lays out a Swing component, so
+				// it is done on the event thread, and only when the selection has changed
+				Aircraft selected;
+				synchronized (this.airport) {
+					selected = this.airport.getSelected();
+					if (selected != null && selected.isHandedOff())
+						selected = null;
 				}
-				else if (selected != null) {
-					Controls controls = selected.getControls();
-					if (this.controls != null)
-						this.remove(this.controls);
-					this.controls = controls;
-					if (this.controls != null)
-						this.add(this.controls);
+				if (selected != bound) {
+					Aircraft owner = selected;
+					SwingUtilities.invokeLater(() -> this.controls.bind(owner));
+					bound = selected;
 				}
 			}
 
-			this.repaint();
-			
-			long endMillis = System.currentTimeMillis();
+			// Once a game is going, only the parts of the radar that moved and the controls
+			// are repainted. The conflict banner is drawn by this panel, so it needs it all
+			if (this.radar == null || this.airport.hasConflict())
+				this.repaint();
+			else {
+				this.radar.repaintDirty();
+				this.controls.repaint();
+			}
 
-			// Wait for enough time to have the desired frame rate
-			long deltaMillis = endMillis - startMillis;
-			long baseMillisPerFrame = 1000 / Screen.FRAME_RATE;
+			// Measure frame rate once per second, independently of the simulation tick rate
+			windowFrames++;
+			long currentNanos = System.nanoTime();
+			if (currentNanos - windowStartNanos >= 1_000_000_000L) {
+				this.framesPerSecond = windowFrames * 1e9 / (currentNanos - windowStartNanos);
+				windowStartNanos = currentNanos;
+				windowFrames = 0;
+			}
+
+			// Wait for the next frame deadline
 			try {
-				Thread.sleep(Math.max(0, baseMillisPerFrame - deltaMillis));
+				scheduler.awaitNext();
 			}
 			catch (InterruptedException e) {
 				Thread.currentThread().interrupt();
 				e.printStackTrace();
+				return;
+			}
+			if (this.airport != null) {
+				Profiler profiler = this.airport.getContext().getProfiler();
+				profiler.recordNanos(Profiler.Stage.FRAME_LATE, scheduler.getLastLateness());
 			}
 		}
 	}
@@ -0,0 +1,362 @@
+import java.util.Arrays;
+
+
+public class SeparationGrid {
+
+	// At or below this many aircraft, listing every slot is cheaper than probing 27 cells
+	private static final int SCAN_THRESHOLD = 16;
+	private static final long KEY_MASK = 0x1FFFFF; // 21 bits each for column, row, and band
+	private static final long EMPTY_KEY = Long.MIN_VALUE;
+
+
+	private double cellSize; // In nm
+	private double bandSize; // In ft
+
+	// Cell that each slot is currently bucketed in, or EMPTY_KEY if the slot is not in the grid.
+	// The slots in the grid are also listed densely, with where each one is in the list
+	private long[] slotKeys;
+	private int[] occupied;
+	private int[] positions;
+	private int size;
+
+	// Open-addressing hash table from cell key to the slots in that cell. A cell is taken out
+	// once its last slot leaves, and kept for reuse, so the table only holds cells in use
+	private long[] cellKeys;
+	private Cell[] cells;
+	private int cellCount;
+	private Cell spare;
+
+	// Result of the last call to collect
+	private int[] found;
+	private int foundCount;
+
+
+	public SeparationGrid(double cellSize, double bandSize, int capacity) {
+		if (cellSize <= 0)
+			throw new IllegalArgumentException("cellSize " + cellSize + " out of bounds");
+		if (bandSize <= 0)
+			throw new IllegalArgumentException("bandSize " + bandSize + " out of bounds");
+
+		this.cellSize = cellSize;
+		this.bandSize = bandSize;
+		this.slotKeys = new long[Math.max(1, capacity)];
+		Arrays.fill(this.slotKeys, SeparationGrid.EMPTY_KEY);
+		this.occupied = new int[this.slotKeys.length];
+		this.positions = new int[this.slotKeys.length];
+		this.size = 0;
+		this.cellKeys = new long[64];
+		Arrays.fill(this.cellKeys, SeparationGrid.EMPTY_KEY);
+		this.cells = new Cell[64];
+		this.cellCount = 0;
+		this.spare = null;
+		this.found = new int[SeparationGrid.SCAN_THRESHOLD];
+		this.foundCount = 0;
+	}
+
+
+	private long key(long column, long row, long band) {
+		return ((column & SeparationGrid.KEY_MASK) << 42) |
+			   ((row & SeparationGrid.KEY_MASK) << 21) |
+			   (band & SeparationGrid.KEY_MASK);
+	}
+
+
+	private long key(double x, double y, double alt) {
+		return this.key((long) Math.floor(x / this.cellSize),
+						(long) Math.floor(y / this.cellSize),
+						(long) Math.floor(alt / this.bandSize));
+	}
+
+
+	private int index(long key) {
+		// Mix the bits of the key so neighboring cells spread across the table
+		long hash = key * 0x9E3779B97F4A7C15L;
+		return (int) (hash >>> 32) & (this.cellKeys.length - 1);
+	}
+
+
+	private int find(long key) {
+		int i = this.index(key);
+		while (this.cellKeys[i] != SeparationGrid.EMPTY_KEY) {
+			if (this.cellKeys[i] == key)
+				return i;
+			i = (i + 1) & (this.cellKeys.length - 1);
+		}
+		return -1;
+	}
+
+
+	private Cell getCell(long key) {
+		int i = this.find(key);
+		return (i == -1) ? null : this.cells[i];
+	}
+
+
+	private Cell getOrCreateCell(long key) {
+		Cell cell = this.getCell(key);
+		if (cell != null)
+			return cell;
+
+		// Keep the table at most half full so probe sequences stay short
+		if ((this.cellCount + 1) * 2 > this.cellKeys.length)
+			this.resizeCells();
+
+		int i = this.index(key);
+		while (this.cellKeys[i] != SeparationGrid.EMPTY_KEY)
+			i = (i + 1) & (this.cellKeys.length - 1);
+		if (this.spare != null) {
+			cell = this.spare;
+			this.spare = cell.next;
+			cell.next = null;
+		}
+		else
+			cell = new Cell();
+		this.cellKeys[i] = key;
+		this.cells[i] = cell;
+		this.cellCount++;
+		return cell;
+	}
+
+
+	private void removeFromCell(long key, int slot) {
+		int i = this.find(key);
+		Cell cell = this.cells[i];
+		cell.remove(slot);
+		if (cell.size > 0)
+			return;
+
+		// Backward shift deletion: entries further along the probe sequence move up into the
+		// hole unless that would put them before their home index, so no lookup ever stops
+		// early at the hole and no tombstones are needed
+		int mask = this.cellKeys.length - 1;
+		int j = i;
+		while (true) {
+			j = (j + 1) & mask;
+			if (this.cellKeys[j] == SeparationGrid.EMPTY_KEY)
+				break;
+			int home = this.index(this.cellKeys[j]);
+			if (((j - home) & mask) >= ((j - i) & mask)) {
+				this.cellKeys[i] = this.cellKeys[j];
+				this.cells[i] = this.cells[j];
+				i = j;
+			}
+		}
+		this.cellKeys[i] = SeparationGrid.EMPTY_KEY;
+		this.cells[i] = null;
+		this.cellCount--;
+		cell.next = this.spare;
+		this.spare = cell;
+	}
+
+
+	private void resizeCells() {
+		long[] oldKeys = this.cellKeys;
+		Cell[] oldCells = this.cells;
+		this.cellKeys = new long[oldKeys.length * 2];
+		Arrays.fill(this.cellKeys, SeparationGrid.EMPTY_KEY);
+		this.cells = new Cell[oldCells.length * 2];
+
+		for (int j = 0; j < oldKeys.length; j++) {
+			if (oldKeys[j] == SeparationGrid.EMPTY_KEY)
+				continue;
+			int i = this.index(oldKeys[j]);
+			while (this.cellKeys[i] != SeparationGrid.EMPTY_KEY)
+				i = (i + 1) & (this.cellKeys.length - 1);
+			this.cellKeys[i] = oldKeys[j];
+			this.cells[i] = oldCells[j];
+		}
+	}
+
+
+	private void ensureCapacity(int slot) {
+		if (slot < this.slotKeys.length)
+			return;
+
+		int oldLength = this.slotKeys.length;
+		this.slotKeys = Arrays.copyOf(this.slotKeys, Math.max(slot + 1, oldLength * 2));
+		Arrays.fill(this.slotKeys, oldLength, this.slotKeys.length, SeparationGrid.EMPTY_KEY);
+		this.occupied = Arrays.copyOf(this.occupied, this.slotKeys.length);
+		this.positions = Arrays.copyOf(this.positions, this.slotKeys.length);
+	}
+
+
+	public void add(int slot, double x, double y, double alt) {
+		if (slot < 0)
+			throw new IllegalArgumentException("slot " + slot + " out of bounds");
+		this.ensureCapacity(slot);
+		if (this.slotKeys[slot] != SeparationGrid.EMPTY_KEY)
+			throw new IllegalStateException("slot " + slot + " is already in the grid");
+
+		long key = this.key(x, y, alt);
+		this.getOrCreateCell(key).add(slot);
+		this.slotKeys[slot] = key;
+		this.positions[slot] = this.size;
+		this.occupied[this.size++] = slot;
+	}
+
+
+	public void move(int slot, double x, double y, double alt) {
+		long oldKey = this.slotKeys[slot];
+		long newKey = this.key(x, y, alt);
+		if (oldKey == newKey || oldKey == SeparationGrid.EMPTY_KEY)
+			return;
+
+		// Only re-bucket when the aircraft has crossed into a different cell
+		this.removeFromCell(oldKey, slot);
+		this.getOrCreateCell(newKey).add(slot);
+		this.slotKeys[slot] = newKey;
+	}
+
+
+	public void remove(int slot) {
+		long key = this.slotKeys[slot];
+		if (key == SeparationGrid.EMPTY_KEY)
+			return;
+
+		this.removeFromCell(key, slot);
+		this.slotKeys[slot] = SeparationGrid.EMPTY_KEY;
+
+		// Move the last listed slot into the one removed
+		int last = this.occupied[--this.size];
+		this.occupied[this.positions[slot]] = last;
+		this.positions[last] = this.positions[slot];
+	}
+
+
+	public void renumber(int from, int to) {
+		long key = this.slotKeys[from];
+		if (key == SeparationGrid.EMPTY_KEY)
+			return;
+		this.ensureCapacity(to);
+		if (this.slotKeys[to] != SeparationGrid.EMPTY_KEY)
+			throw new IllegalStateException("slot " + to + " is already in the grid");
+
+		this.getCell(key).replace(from, to);
+		this.slotKeys[to] = key;
+		this.slotKeys[from] = SeparationGrid.EMPTY_KEY;
+		this.positions[to] = this.positions[from];
+		this.occupied[this.positions[to]] = to;
+	}
+
+
+	public void clear() {
+		Arrays.fill(this.slotKeys, SeparationGrid.EMPTY_KEY);
+		for (int i = 0; i < this.cells.length; i++) {
+			Cell cell = this.cells[i];
+			if (cell == null)
+				continue;
+			cell.size = 0;
+			cell.next = this.spare;
+			this.spare = cell;
+			this.cells[i] = null;
+		}
+		Arrays.fill(this.cellKeys, SeparationGrid.EMPTY_KEY);
+		this.cellCount = 0;
+		this.size = 0;
+	}
+
+
+	public double getCellSize() {
+		return this.cellSize;
+	}
+
+
+	public double getBandSize() {
+		return this.bandSize;
+	}
+
+
+	public int size() {
+		return this.size;
+	}
+
+
+	public int collect(double x, double y, double alt) {
+		this.foundCount = 0;
+		if (this.size <= SeparationGrid.SCAN_THRESHOLD) {
+			// Sorted so callers visit slots in the same order as a scan of the aircraft array
+			System.arraycopy(this.occupied, 0, this.found, 0, this.size);
+			this.foundCount = this.size;
+			Arrays.sort(this.found, 0, this.foundCount);
+			return this.foundCount;
+		}
+
+		long column = (long) Math.floor(x / this.cellSize);
+		long row = (long) Math.floor(y / this.cellSize);
+		long band = (long) Math.floor(alt / this.bandSize);
+
+		// Any aircraft closer than one cell horizontally and one band vertically must be in one
+		// of the 27 cells surrounding (and including) this position's cell
+		for (long dc = -1; dc <= 1; dc++) {
+			for (long dr = -1; dr <= 1; dr++) {
+				for (long db = -1; db <= 1; db++) {
+					Cell cell = this.getCell(this.key(column + dc, row + dr, band + db));
+					if (cell == null)
+						continue;
+					if (this.foundCount + cell.size > this.found.length)
+						this.found = Arrays.copyOf(this.found,
+												   Math.max(this.found.length * 2,
+															this.foundCount + cell.size));
+					System.arraycopy(cell.slots, 0, this.found, this.foundCount, cell.size);
+					this.foundCount += cell.size;
+				}
+			}
+		}
+
+		// Sort so callers visit slots in the same order as a scan of the aircraft array
+		Arrays.sort(this.found, 0, this.foundCount);
+		return this.foundCount;
+	}
+
+
+	public int found(int i) {
+		if (i < 0 || i >= this.foundCount)
+			throw new IndexOutOfBoundsException("index " + i + " out of bounds");
+		return this.found[i];
+	}
+
+
+
+	private static class Cell {
+
+		public int[] slots;
+		public int size;
+		public Cell next; // In the list of spare cells
+
+
+		public Cell() {
+			this.slots = new int[4];
+			this.size = 0;
+			this.next = null;
+		}
+
+
+		public void add(int slot) {
+			if (this.size == this.slots.length)
+				this.slots = Arrays.copyOf(this.slots, this.slots.length * 2);
+			this.slots[this.size++] = slot;
+		}
+
+
+		public void remove(int slot) {
+			for (int i = 0; i < this.size; i++) {
+				if (this.slots[i] == slot) {
+					this.slots[i] = this.slots[--this.size];
+					return;
+				}
+			}
+		}
+
+
+		public void replace(int from, int to) {
+			for (int i = 0; i < this.size; i++) {
+				if (this.slots[i] == from) {
+					this.slots[i] = to;
+					return;
+				}
+			}
+		}
+
+	}
+
+}
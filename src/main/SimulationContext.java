@@ -0,0 +1,96 @@
+public class SimulationContext {
+
+	// Fastest game speed, which is run as this many ticks of the model for each tick of real time
+	public static final int MAX_GAME_SPEED = 1000;
+
+
+	// Settings that belong to one simulation and its displays, rather than to the process. They
+	// are set from the event thread and read from the engine thread, so they are volatile
+	private volatile int pxPerMile;
+	private volatile int gameSpeed;
+	private volatile double achievedSpeed;
+	private volatile boolean showSepRings;
+	private volatile boolean showHud;
+
+	// Counters for export, and stage timings of the engine and the displays of this simulation
+	private final Metrics metrics;
+	private final Profiler profiler;
+
+
+	public SimulationContext() {
+		this.pxPerMile = 1;
+		this.gameSpeed = 1;
+		this.achievedSpeed = 0;
+		this.showSepRings = false;
+		this.showHud = false;
+		this.metrics = new Metrics();
+		this.profiler = new Profiler(this.metrics);
+	}
+
+
+	public int getPxPerMile() {
+		return this.pxPerMile;
+	}
+
+
+	public void setPxPerMile(int pxPerMile) {
+		if (pxPerMile <= 0)
+			throw new IllegalArgumentException("pxPerMile " + pxPerMile + " out of bounds");
+		this.pxPerMile = pxPerMile;
+	}
+
+
+	public int getGameSpeed() {
+		return this.gameSpeed;
+	}
+
+
+	public void setGameSpeed(int gameSpeed) {
+		if (gameSpeed < 0 || gameSpeed > SimulationContext.MAX_GAME_SPEED)
+			throw new IllegalArgumentException("gameSpeed " + gameSpeed + " out of bounds");
+		this.gameSpeed = gameSpeed;
+	}
+
+
+	public double getAchievedSpeed() {
+		// Simulated seconds per real second over the last second, set by a running engine. It
+		// is below the game speed when the CPU can not keep up
+		return this.achievedSpeed;
+	}
+
+
+	public void setAchievedSpeed(double achievedSpeed) {
+		this.achievedSpeed = achievedSpeed;
+	}
+
+
+	public boolean showSepRings() {
+		return this.showSepRings;
+	}
+
+
+	public void setShowSepRings(boolean showSepRings) {
+		this.showSepRings = showSepRings;
+	}
+
+
+	public boolean showHud() {
+		return this.showHud;
+	}
+
+
+	public void setShowHud(boolean showHud) {
+		this.showHud = showHud;
+	}
+
+
+	public Metrics getMetrics() {
+		return this.metrics;
+	}
+
+
+	public Profiler getProfiler() {
+		return this.profiler;
+	}
+
+}
@@ -0,0 +1,173 @@
+public class SimulationEngine implements Runnable {
+
+	public static final int TICK_RATE = 60;
+	// Maximum amount of real time (in sec) that is caught up on after a stall, with the default
+	// CAP policy. Anything more than this is dropped so a long pause cannot lock the engine into
+	// endless catch-up ticks
+	private static final double MAX_ACCUMULATED = 0.25;
+	// Fraction of each tick period that can be spent on game speed steps, with the rest left for
+	// drawing and input, which need the lock on the airport
+	private static final double STEP_BUDGET = 0.75;
+
+
+	private Airport airport;
+	private SimulationContext context;
+	private int tickRate;
+	private volatile boolean running;
+	private Thread thread;
+	private FrameScheduler scheduler;
+
+	// Steps owed to the game speed that did not fit in the budget of earlier ticks
+	private long owedSteps;
+
+	// Performance information
+	private long ticks;
+	private long steps;
+	private volatile double ticksPerSecond;
+
+
+	public SimulationEngine(Airport airport) {
+		this(airport, SimulationEngine.TICK_RATE);
+	}
+
+
+	public SimulationEngine(Airport airport, int tickRate) {
+		if (airport == null)
+			throw new NullPointerException("airport cannot be null");
+		if (tickRate <= 0)
+			throw new IllegalArgumentException("tickRate " + tickRate + " out of bounds");
+
+		this.airport = airport;
+		this.context = airport.getContext();
+		this.tickRate = tickRate;
+		this.running = false;
+		this.scheduler = new FrameScheduler(tickRate, FrameScheduler.Policy.CAP,
+											(int) Math.ceil(SimulationEngine.MAX_ACCUMULATED *
+															tickRate));
+		this.owedSteps = 0;
+		this.ticks = 0;
+		this.steps = 0;
+		this.ticksPerSecond = 0;
+	}
+
+
+	public Airport getAirport() {
+		return this.airport;
+	}
+
+
+	public int getTickRate() {
+		return this.tickRate;
+	}
+
+
+	public double getTicksPerSecond() {
+		return this.ticksPerSecond;
+	}
+
+
+	public FrameScheduler getScheduler() {
+		return this.scheduler;
+	}
+
+
+	public synchronized void start() {
+		if (this.running)
+			return;
+
+		this.running = true;
+		this.thread = new Thread(this, "SimulationEngine");
+		this.thread.setDaemon(true);
+		this.thread.start();
+	}
+
+
+	public synchronized void stop() {
+		this.running = false;
+		if (this.thread != null)
+			this.thread.interrupt();
+		this.thread = null;
+	}
+
+
+	public void tick() {
+		// Game speed runs that many steps of one tick each, rather than one longer step, so the
+		// model behaves the same at any speed. The lock is held across all of them, so drawing
+		// only ever sees the state at the end of a tick
+		double tickSeconds = 1.0 / this.tickRate;
+		int gameSpeed = this.context.getGameSpeed();
+		synchronized (this.airport) {
+			for (int i = 0; i < gameSpeed; i++)
+				this.airport.update(tickSeconds);
+		}
+		this.ticks++;
+		this.steps += gameSpeed;
+	}
+
+
+	private void warp(int due) {
+		// Like tick, for every tick that is due, but stopping once the budget for this tick is
+		// spent. Steps that do not fit are owed and run in later ticks, so the achieved speed
+		// follows what the CPU can do. Unless every missed step is wanted, the debt is capped at
+		// the same length of time as missed ticks are
+		double tickSeconds = 1.0 / this.tickRate;
+		long gameSpeed = this.context.getGameSpeed();
+		long owed = this.owedSteps + due * gameSpeed;
+		if (this.scheduler.getPolicy() != FrameScheduler.Policy.BURST) {
+			long maxOwed = gameSpeed * (long) Math.ceil(SimulationEngine.MAX_ACCUMULATED *
+														this.tickRate);
+			owed = Math.min(owed, maxOwed);
+		}
+
+		long budgetNanos = (long) (this.scheduler.getPeriodNanos() * SimulationEngine.STEP_BUDGET);
+		long endNanos = System.nanoTime() + budgetNanos;
+		synchronized (this.airport) {
+			while (owed > 0 && this.running) {
+				this.airport.update(tickSeconds);
+				owed--;
+				this.steps++;
+				if (System.nanoTime() - endNanos >= 0)
+					break;
+			}
+		}
+		this.owedSteps = owed;
+		this.ticks += due;
+	}
+
+
+	@Override
+	public void run() {
+		Profiler profiler = this.context.getProfiler();
+		long windowStartNanos = System.nanoTime();
+		long windowStartTicks = this.ticks;
+		long windowStartSteps = this.steps;
+
+		while (this.running) {
+			// Wait for the next tick deadline, then run every tick that is due by the scheduler's
+			// policy, so simulated time keeps pace with wall time times the game speed
+			int due;
+			try {
+				due = this.scheduler.awaitNext();
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+			profiler.recordNanos(Profiler.Stage.TICK_LATE, this.scheduler.getLastLateness());
+			this.warp(due);
+
+			// Measure throughput once per second
+			long currentNanos = System.nanoTime();
+			if (currentNanos - windowStartNanos >= 1_000_000_000L) {
+				long elapsedNanos = currentNanos - windowStartNanos;
+				this.ticksPerSecond = (this.ticks - windowStartTicks) * 1e9 / elapsedNanos;
+				double stepsPerSecond = (this.steps - windowStartSteps) * 1e9 / elapsedNanos;
+				this.context.setAchievedSpeed(stepsPerSecond / this.tickRate);
+				windowStartNanos = currentNanos;
+				windowStartTicks = this.ticks;
+				windowStartSteps = this.steps;
+			}
+		}
+	}
+
+}
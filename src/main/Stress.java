@@ -0,0 +1,61 @@
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+
+public class Stress {
+
+	private Stress() { }
+
+
+	public static void main(String[] args) {
+		if (args.length < 3) {
+			System.err.println("usage: java Stress <code> <minutes> <acPerMin> [seed] [metrics]");
+			System.exit(1);
+		}
+
+		AirportDefinition definition = new AirportRegistry().get(args[0].toUpperCase());
+		int minutes = Integer.parseInt(args[1]);
+		double acPerMin = Double.parseDouble(args[2]);
+		long seed = (args.length > 3) ? Long.parseLong(args[3]) : System.nanoTime();
+		if (minutes <= 0)
+			throw new IllegalArgumentException("minutes " + minutes + " out of bounds");
+
+		// Lift the cap on simultaneous tracks, and keep running after the first conflict
+		Airport airport = new Airport(definition, seed);
+		airport.setMaxAircraft(Integer.MAX_VALUE);
+		TrafficGenerator traffic = airport.getTraffic();
+		traffic.setAcPerMin(acPerMin);
+		traffic.setMaxQueued(Integer.MAX_VALUE);
+		Metrics metrics = airport.getContext().getMetrics();
+		Path metricsPath = (args.length > 4) ? Paths.get(args[4]) : null;
+		if (metricsPath != null)
+			metrics.startDumping(metricsPath, Headless.METRICS_PERIOD);
+		SimulationEngine engine = new SimulationEngine(airport);
+		long ticks = (long) minutes * 60 * SimulationEngine.TICK_RATE;
+
+		int peak = 0;
+		long startNanos = System.nanoTime();
+		for (long i = 0; i < ticks; i++) {
+			engine.tick();
+			peak = Math.max(peak, airport.getAircraft().size());
+		}
+		long endNanos = System.nanoTime();
+		if (metricsPath != null) {
+			metrics.stopDumping();
+			metrics.write(metricsPath);
+		}
+
+		double seconds = (endNanos - startNanos) / 1e9;
+		System.out.println("airport:   " + definition.getCode());
+		System.out.println("seed:      " + seed);
+		System.out.println("simulated: " + minutes + " min (" + ticks + " ticks)");
+		System.out.println("elapsed:   " + String.format("%.3f", seconds) + " s");
+		System.out.println("ticks/sec: " + String.format("%.0f", ticks / seconds));
+		System.out.println("arrivals:  " + traffic.getArrivals());
+		System.out.println("spawned:   " + traffic.getSpawned());
+		System.out.println("queued:    " + traffic.getQueued());
+		System.out.println("tracks:    " + airport.getAircraft().size() + " (peak " + peak + ")");
+		System.out.println("flights:   " + airport.getFlights());
+	}
+
+}
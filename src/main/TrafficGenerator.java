@@ -0,0 +1,239 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.SplittableRandom;
+
+
+public class TrafficGenerator {
+
+	public static final int DEFAULT_MAX_QUEUED = 4; // Per waypoint
+
+	// Earliest arrival first, and the lowest waypoint first between arrivals at the same time, so
+	// the order does not depend on how the queue happens to be laid out
+	private static final Comparator<Arrival> BY_TIME =
+		Comparator.<Arrival>comparingDouble(a -> a.time).thenComparingInt(a -> a.waypoint);
+
+
+	private Airport airport;
+	private Waypoint[] waypoints;
+	private double acPerMin; // Over the whole airport
+	private int maxQueued;
+
+	// Every waypoint is an independent Poisson process, so the time to its next arrival is
+	// exponential. The next arrival of each waypoint is kept in a queue on simulated time, and
+	// updates only do any work when the earliest one is due
+	private double time; // In sec (simulated)
+	private PriorityQueue<Arrival> schedule;
+	private Arrival[] next;
+
+	// Arrivals waiting at each waypoint for separation from the traffic already there, in the
+	// order they arrived
+	private List<ArrayDeque<Waiting>> queues;
+	private int queued;
+	private double[] blocked; // Altitudes found in conflict at one waypoint this update, in ft
+
+	// Statistics
+	private long arrivals;
+	private long spawned;
+	private long dropped;
+	private Metrics.Counter heldCounter;
+
+
+	public TrafficGenerator(Airport airport, double acPerMin) {
+		if (airport == null)
+			throw new NullPointerException("airport cannot be null");
+
+		this.airport = airport;
+		this.waypoints = airport.getWaypoints();
+		this.time = 0;
+		this.schedule = new PriorityQueue<>(Math.max(1, this.waypoints.length),
+											TrafficGenerator.BY_TIME);
+		this.next = new Arrival[this.waypoints.length];
+		for (int i = 0; i < this.next.length; i++)
+			this.next[i] = new Arrival(i);
+		this.setAcPerMin(acPerMin);
+		this.maxQueued = TrafficGenerator.DEFAULT_MAX_QUEUED;
+		this.queues = new ArrayList<>(this.waypoints.length);
+		for (int i = 0; i < this.waypoints.length; i++)
+			this.queues.add(new ArrayDeque<>());
+		this.queued = 0;
+		this.blocked = new double[8];
+		this.arrivals = 0;
+		this.spawned = 0;
+		this.dropped = 0;
+		this.heldCounter =
+			airport.getContext().getMetrics().counter("spawn_rejected_total", "Arrivals held " +
+													  "at their waypoint because they would " +
+													  "be in conflict");
+	}
+
+
+	public double getAcPerMin() {
+		return this.acPerMin;
+	}
+
+
+	public void setAcPerMin(double acPerMin) {
+		if (acPerMin < 0)
+			throw new IllegalArgumentException("acPerMin " + acPerMin + " out of bounds");
+		this.acPerMin = acPerMin;
+
+		// Waiting times are memoryless, so the next arrivals can be drawn again from now at the
+		// new rate without changing the statistics
+		this.schedule.clear();
+		for (Arrival arrival : this.next)
+			this.schedule(arrival, this.time);
+	}
+
+
+	public int getMaxQueued() {
+		return this.maxQueued;
+	}
+
+
+	public void setMaxQueued(int maxQueued) {
+		if (maxQueued < 0)
+			throw new IllegalArgumentException("maxQueued " + maxQueued + " out of bounds");
+		this.maxQueued = maxQueued;
+	}
+
+
+	public long getArrivals() {
+		return this.arrivals;
+	}
+
+
+	public long getSpawned() {
+		return this.spawned;
+	}
+
+
+	public long getDropped() {
+		return this.dropped;
+	}
+
+
+	public int getQueued() {
+		return this.queued;
+	}
+
+
+	public double getTime() {
+		return this.time;
+	}
+
+
+	private void schedule(Arrival arrival, double after) {
+		// A rate of zero never arrives, so nothing is scheduled
+		double perSecond = (this.acPerMin / 60) / this.waypoints.length; // At one waypoint
+		if (perSecond <= 0)
+			return;
+
+		// Inverse transform of a uniform draw in (0, 1], which can not take the log of zero
+		double uniform = 1 - this.airport.getRandom().nextDouble();
+		arrival.time = after - Math.log(uniform) / perSecond;
+		this.schedule.add(arrival);
+	}
+
+
+	private boolean isBlocked(double alt, int numBlocked) {
+		for (int i = 0; i < numBlocked; i++) {
+			if (this.blocked[i] == alt)
+				return true;
+		}
+		return false;
+	}
+
+
+	public void update(double seconds) {
+		// Take every arrival that is due by the end of this update, in time order, and draw the
+		// one after it at the same waypoint
+		this.time += seconds;
+		while (!this.schedule.isEmpty() && this.schedule.peek().time <= this.time) {
+			Arrival arrival = this.schedule.poll();
+			this.arrivals++;
+			ArrayDeque<Waiting> queue = this.queues.get(arrival.waypoint);
+			if (queue.size() >= this.maxQueued)
+				this.dropped++;
+			else {
+				Waypoint waypoint = this.waypoints[arrival.waypoint];
+				queue.add(new Waiting(this.airport.createAircraft(waypoint)));
+				this.queued++;
+			}
+			this.schedule(arrival, arrival.time);
+		}
+		if (this.queued == 0)
+			return;
+
+		// Release every waiting arrival that is now separated from the traffic at its
+		// waypoint. The ones behind a blocked arrival are still tried, since they may be at
+		// a different altitude. Arrivals share the waypoint's position, so one that is
+		// blocked means every other one at its altitude is blocked too. Waiting arrivals are
+		// tried again every update, so each is only counted as held the first time
+		AircraftTable table = this.airport.getAircraft();
+		for (int i = 0; i < this.waypoints.length; i++) {
+			int numBlocked = 0;
+			Iterator<Waiting> it = this.queues.get(i).iterator();
+			while (it.hasNext() && table.size() < this.airport.getMaxAircraft()) {
+				Waiting waiting = it.next();
+				double alt = waiting.aircraft.getCurrentAlt();
+				boolean blocked = this.isBlocked(alt, numBlocked);
+				if (!blocked && this.airport.noConflict(waiting.aircraft) &&
+					this.airport.addAircraft(waiting.aircraft))
+				{
+					it.remove();
+					this.queued--;
+					this.spawned++;
+					continue;
+				}
+
+				if (!blocked) {
+					if (numBlocked == this.blocked.length)
+						this.blocked = Arrays.copyOf(this.blocked, numBlocked * 2);
+					this.blocked[numBlocked++] = alt;
+				}
+				if (!waiting.held) {
+					waiting.held = true;
+					this.heldCounter.increment();
+				}
+			}
+		}
+	}
+
+
+
+	private static class Arrival {
+
+		// One per waypoint, taken off the schedule when it is due and put back with a new time
+		private final int waypoint;
+		private double time; // In sec (simulated)
+
+
+		public Arrival(int waypoint) {
+			this.waypoint = waypoint;
+			this.time = 0;
+		}
+
+	}
+
+
+
+	private static class Waiting {
+
+		// An arrival in a waypoint's queue, and whether it has been held back by a conflict yet
+		private final Aircraft aircraft;
+		private boolean held;
+
+
+		public Waiting(Aircraft aircraft) {
+			this.aircraft = aircraft;
+			this.held = false;
+		}
+
+	}
+
+}
@@ -1,29 +1,65 @@
-import java.awt.Graphics;
-import java.awt.Point;
-
-
 public abstract class Waypoint {
 
-	private String identifier;
-	private int exitHdg; // In deg
-	private int altFromExtrema; // In ft
-	private double x; // In nm
-	private double y; // In nm
+	// Distance either side of a point that counts as reaching it
+	public static final double RANGE = 0.5; // In nm
+
+	// Everything about a waypoint is fixed when it is created, and anything derived from the
+	// position and heading is worked out here once, so the update and the radar only read fields
+	private final String identifier;
+	private final int exitHdg; // In deg
+	private final int altFromExtrema; // In ft
+	private final double x; // In nm
+	private final double y; // In nm
+	private final double targetX; // In nm
+	private final double targetY; // In nm
+	private final double hdgX; // Unit vector along the exit heading, x east and y north
+	private final double hdgY;
+	private final double minX; // Bounds of the range around the position, in nm
+	private final double maxX;
+	private final double minY;
+	private final double maxY;
+	private final double targetMinX; // Bounds of the range around the target, in nm
+	private final double targetMaxX;
+	private final double targetMinY;
+	private final double targetMaxY;
 	
 
-	public Waypoint(String identifier, int exitHdg, double x, double y) {
+	public Waypoint(String identifier, int exitHdg, double x, double y, int altFromExtrema) {
+		this(identifier, exitHdg, x, y, altFromExtrema, x, y);
+	}
+
+
+	protected Waypoint(String identifier, int exitHdg, double x, double y, int altFromExtrema,
+					   double targetX, double targetY)
+	{
 		this.identifier = identifier;
 		this.exitHdg = exitHdg;
-		int maxAlt = 3000;
-		int minAlt = 0;
-		int alt = (int) (Math.random() * (maxAlt - minAlt + 1)) + minAlt;
-		// Allow clearance when altitude is <= 2000 ft for landing or == max - alt for exiting
-		this.altFromExtrema =
-			this instanceof Runway ?
-			2000 :
-			AircraftMath.round(alt, Aircraft.ALT_INTERVAL);
+		this.altFromExtrema = altFromExtrema;
 		this.x = x;
 		this.y = y;
+		this.targetX = targetX;
+		this.targetY = targetY;
+		this.hdgX = Waypoint.hdgX(exitHdg);
+		this.hdgY = Waypoint.hdgY(exitHdg);
+
+		this.minX = x - Waypoint.RANGE;
+		this.maxX = x + Waypoint.RANGE;
+		this.minY = y - Waypoint.RANGE;
+		this.maxY = y + Waypoint.RANGE;
+		this.targetMinX = targetX - Waypoint.RANGE;
+		this.targetMaxX = targetX + Waypoint.RANGE;
+		this.targetMinY = targetY - Waypoint.RANGE;
+		this.targetMaxY = targetY + Waypoint.RANGE;
+	}
+
+
+	protected static double hdgX(int hdg) {
+		return Math.cos(AircraftMath.hdgToRad(hdg));
+	}
+
+
+	protected static double hdgY(int hdg) {
+		return Math.sin(AircraftMath.hdgToRad(hdg));
 	}
 
 
@@ -37,6 +73,16 @@ public abstract class Waypoint {
 	}
 
 
+	public double getHdgX() {
+		return this.hdgX;
+	}
+
+
+	public double getHdgY() {
+		return this.hdgY;
+	}
+
+
 	public double getX() {
 		return this.x;
 	}
@@ -48,26 +94,24 @@ public abstract class Waypoint {
 
 
 	public double getTargetX() {
-		return this.x;
+		return this.targetX;
 	}
 
 
 	public double getTargetY() {
-		return this.y;
+		return this.targetY;
 	}
 
 
 	public boolean inRange(double aircraftX, double aircraftY) {
-		double error = 0.5;
-		return aircraftX >= this.getX() - error && aircraftX <= this.getX() + error &&
-			   aircraftY >= this.getY() - error && aircraftY <= this.getY() + error;
+		return aircraftX >= this.minX && aircraftX <= this.maxX &&
+			   aircraftY >= this.minY && aircraftY <= this.maxY;
 	}
 
 
 	public boolean inTargetRange(double aircraftX, double aircraftY) {
-		double error = 0.5;
-		return aircraftX >= this.getTargetX() - error && aircraftX <= this.getTargetX() + error &&
-			   aircraftY >= this.getTargetY() - error && aircraftY <= this.getTargetY() + error;
+		return aircraftX >= this.targetMinX && aircraftX <= this.targetMaxX &&
+			   aircraftY >= this.targetMinY && aircraftY <= this.targetMaxY;
 	}
 
 
@@ -78,9 +122,6 @@ public abstract class Waypoint {
 	}
 
 
-	public abstract void paintComponent(Graphics g);
-
-
 	@Override
 	public String toString() {
 		return this.identifier;